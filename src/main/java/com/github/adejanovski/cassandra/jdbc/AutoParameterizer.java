@@ -0,0 +1,240 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TypeCodec;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Promotes ad-hoc CQL that only differs by its literals to server-side prepared statements.
+ * <p>
+ * Each DML statement is normalized into a shape where the literals of its values, SET and WHERE
+ * clauses are replaced by bind markers. Once a shape has been seen often enough it is prepared
+ * once (asynchronously, so that nothing ever blocks on it) and kept in a bounded cache; the
+ * following statements with the same shape are then executed as {@link BoundStatement}s bound
+ * with their own literals, which saves the parsing on the Cassandra side and gives the driver the
+ * routing key for token-aware load balancing.
+ * <p>
+ * Anything that can not be parameterized safely (DDL, statements that already have bind
+ * markers, collection literals, literals that can not be converted to the type of their variable,
+ * shapes that fail to prepare, ...) is left to run as a simple statement.
+ */
+class AutoParameterizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AutoParameterizer.class);
+
+    static final int DEFAULT_THRESHOLD = 3;
+    static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private final Session session;
+    private final int threshold;
+
+    // how many times each shape not prepared yet has been seen
+    private final LoadingCache<String, AtomicInteger> shapeCounts;
+
+    // the prepared shapes, their statistics give the hit and miss counts
+    private final Cache<String, ListenableFuture<PreparedStatement>> preparedShapes;
+
+    AutoParameterizer(Session session, int threshold, int cacheSize) {
+        this.session = session;
+        this.threshold = Math.max(1, threshold);
+        this.shapeCounts = CacheBuilder.newBuilder().maximumSize(cacheSize)
+                .build(new CacheLoader<String, AtomicInteger>() {
+                    @Override
+                    public AtomicInteger load(String shape) {
+                        return new AtomicInteger();
+                    }
+                });
+        this.preparedShapes = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
+                .build();
+    }
+
+    /**
+     * @return the statement to run for the given CQL, or null if it should run as a simple
+     *         statement
+     */
+    com.datastax.driver.core.Statement bind(String cql) {
+        Shape shape = Shape.of(cql);
+        if (shape == null)
+            return null;
+
+        String keyspace = session.getLoggedKeyspace();
+        String key = keyspace == null ? shape.cql : keyspace + "|" + shape.cql;
+        ListenableFuture<PreparedStatement> prepared = preparedShapes.getIfPresent(key);
+        if (prepared == null) {
+            if (shapeCounts.getUnchecked(key).incrementAndGet() >= threshold) {
+                if (logger.isDebugEnabled())
+                    logger.debug("Preparing repeated CQL shape: {}", shape.cql);
+                preparedShapes.asMap().putIfAbsent(key, session.prepareAsync(shape.cql));
+                shapeCounts.invalidate(key);
+            }
+            return null;
+        }
+        if (!prepared.isDone())
+            return null;
+
+        try {
+            return shape.bind(Uninterruptibles.getUninterruptibly(prepared),
+                    session.getCluster().getConfiguration().getCodecRegistry(),
+                    session.getCluster().getConfiguration().getProtocolOptions()
+                            .getProtocolVersion());
+        } catch (ExecutionException e) {
+            // the failed preparation stays cached so that the shape is not prepared over again
+            return null;
+        }
+    }
+
+    CacheStats stats() {
+        return preparedShapes.stats();
+    }
+
+    /**
+     * A DML statement with its literals replaced by bind markers.
+     */
+    static final class Shape {
+        final String cql;
+        final List<String> literals;
+
+        private Shape(String cql, List<String> literals) {
+            this.cql = cql;
+            this.literals = literals;
+        }
+
+        /**
+         * Normalizes a statement: whitespace and comments are collapsed, and the literals from the
+         * first FROM, VALUES, JSON, USING, SET or WHERE on are replaced by bind markers.
+         *
+         * @return the shape of the statement, or null if it can not be parameterized
+         */
+        static Shape of(String cql) {
+            CqlLexer lexer = new CqlLexer(cql);
+            StringBuilder normalized = new StringBuilder(cql.length());
+            List<String> literals = new ArrayList<String>();
+
+            boolean first = true;
+            boolean extracting = false;
+            boolean space = false;
+            boolean operand = false;
+
+            int type;
+            while ((type = lexer.next()) != CqlLexer.EOF) {
+                if (type == CqlLexer.WHITESPACE || type == CqlLexer.COMMENT) {
+                    space = normalized.length() > 0;
+                    continue;
+                }
+                if (type == CqlLexer.SEMICOLON) {
+                    // only a trailing semicolon is expected here
+                    continue;
+                }
+                if (type == CqlLexer.BIND_MARKER)
+                    return null;
+
+                if (first) {
+                    if (!(lexer.isKeyword("SELECT") || lexer.isKeyword("INSERT")
+                            || lexer.isKeyword("UPDATE") || lexer.isKeyword("DELETE")))
+                        return null;
+                    first = false;
+                } else if (!extracting) {
+                    extracting = lexer.isKeyword("FROM") || lexer.isKeyword("VALUES")
+                            || lexer.isKeyword("JSON") || lexer.isKeyword("USING")
+                            || lexer.isKeyword("SET") || lexer.isKeyword("WHERE");
+                }
+
+                if (space)
+                    normalized.append(' ');
+                space = false;
+
+                if (extracting && type == CqlLexer.SYMBOL) {
+                    char c = cql.charAt(lexer.tokenStart());
+                    // literals in collections would have to be bound as a whole collection
+                    if (c == '[' || c == '{')
+                        return null;
+                }
+
+                if (extracting && lexer.isLiteral()) {
+                    // "a -1" is a subtraction, not a negative literal
+                    if (type == CqlLexer.NUMBER && cql.charAt(lexer.tokenStart()) == '-' && operand)
+                        return null;
+                    literals.add(literal(cql, lexer));
+                    normalized.append('?');
+                } else {
+                    normalized.append(cql, lexer.tokenStart(), lexer.tokenEnd());
+                }
+                operand = type == CqlLexer.IDENTIFIER || type == CqlLexer.QUOTED_IDENTIFIER
+                        || lexer.isLiteral() || (type == CqlLexer.SYMBOL
+                                && cql.charAt(lexer.tokenStart()) == ')');
+            }
+            if (first)
+                return null;
+            return new Shape(normalized.toString(), literals);
+        }
+
+        private static String literal(String cql, CqlLexer lexer) {
+            if (lexer.tokenType() == CqlLexer.DOLLAR_STRING) {
+                // the codecs only parse single quoted strings
+                String value = cql.substring(lexer.tokenStart() + 2, lexer.tokenEnd() - 2);
+                return "'" + value.replace("'", "''") + "'";
+            }
+            return lexer.tokenText();
+        }
+
+        /**
+         * Binds the literals of this shape, converted to the types of the prepared variables.
+         *
+         * @return the bound statement, or null if a literal does not match its variable
+         */
+        BoundStatement bind(PreparedStatement prepared, CodecRegistry codecRegistry,
+                ProtocolVersion protocolVersion) {
+            ColumnDefinitions variables = prepared.getVariables();
+            if (variables.size() != literals.size())
+                return null;
+            BoundStatement bound = prepared.bind();
+            try {
+                for (int i = 0; i < literals.size(); i++) {
+                    TypeCodec<Object> codec = codecRegistry.codecFor(variables.getType(i));
+                    ByteBuffer value = codec.serialize(codec.parse(literals.get(i)),
+                            protocolVersion);
+                    bound.setBytesUnsafe(i, value);
+                }
+            } catch (RuntimeException e) {
+                if (logger.isDebugEnabled())
+                    logger.debug("Could not bind the literals of {}: {}", cql, e.getMessage());
+                return null;
+            }
+            return bound;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static com.github.adejanovski.cassandra.jdbc.Utils.NOT_SUPPORTED;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientException;
+
+/**
+ * A read only {@link Blob} over the value of a blob column, as returned by the driver: its bytes
+ * are only copied when they are asked for as an array, and only the ones asked for.
+ */
+final class ByteBufferBlob implements Blob {
+
+    private ByteBuffer bytes;
+
+    /**
+     * @param bytes the value, from its position to its limit; not modified
+     */
+    ByteBufferBlob(ByteBuffer bytes) {
+        this.bytes = bytes.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a stream reading a value from its position to its limit, without copying it
+     */
+    static InputStream inputStream(ByteBuffer bytes) {
+        return new ByteBufferInputStream(bytes.asReadOnlyBuffer());
+    }
+
+    private ByteBuffer bytes() throws SQLException {
+        if (bytes == null)
+            throw new SQLNonTransientException("the blob was freed");
+        return bytes;
+    }
+
+    /**
+     * @return the bytes from a position (from 1) to the end of the blob, or to the given length
+     */
+    private ByteBuffer slice(long pos, long length) throws SQLException {
+        ByteBuffer bytes = bytes();
+        if (pos < 1 || pos > bytes.remaining() + 1L || length < 0)
+            throw new SQLNonTransientException(
+                    "invalid position " + pos + " or length " + length + " in a blob of "
+                            + bytes.remaining() + " bytes");
+        ByteBuffer slice = bytes.duplicate();
+        slice.position(bytes.position() + (int) (pos - 1));
+        slice.limit((int) Math.min(bytes.limit(), slice.position() + length));
+        return slice;
+    }
+
+    public long length() throws SQLException {
+        return bytes().remaining();
+    }
+
+    public byte[] getBytes(long pos, int length) throws SQLException {
+        ByteBuffer slice = slice(pos, length);
+        byte[] array = new byte[slice.remaining()];
+        slice.get(array);
+        return array;
+    }
+
+    public InputStream getBinaryStream() throws SQLException {
+        return new ByteBufferInputStream(bytes().duplicate());
+    }
+
+    public InputStream getBinaryStream(long pos, long length) throws SQLException {
+        return new ByteBufferInputStream(slice(pos, length));
+    }
+
+    public long position(byte[] pattern, long start) throws SQLException {
+        ByteBuffer bytes = bytes();
+        int from = bytes.position() + (int) Math.max(0, start - 1);
+        int last = bytes.limit() - pattern.length;
+        for (int i = from; i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes.get(i + j) == pattern[j])
+                j++;
+            if (j == pattern.length)
+                return i - bytes.position() + 1;
+        }
+        return -1;
+    }
+
+    public long position(Blob pattern, long start) throws SQLException {
+        return position(pattern.getBytes(1, (int) pattern.length()), start);
+    }
+
+    public int setBytes(long pos, byte[] bytes) throws SQLException {
+        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException {
+        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    public OutputStream setBinaryStream(long pos) throws SQLException {
+        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    public void truncate(long len) throws SQLException {
+        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    public void free() throws SQLException {
+        bytes = null;
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer bytes;
+
+        ByteBufferInputStream(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return bytes.hasRemaining() ? bytes.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!bytes.hasRemaining())
+                return -1;
+            len = Math.min(len, bytes.remaining());
+            bytes.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, bytes.remaining()));
+            bytes.position(bytes.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return bytes.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            bytes.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            bytes.reset();
+        }
+    }
+}
@@ -21,15 +21,7 @@ import static com.github.adejanovski.cassandra.jdbc.Utils.ALWAYS_AUTOCOMMIT;
 import static com.github.adejanovski.cassandra.jdbc.Utils.BAD_TIMEOUT;
 import static com.github.adejanovski.cassandra.jdbc.Utils.NO_INTERFACE;
 import static com.github.adejanovski.cassandra.jdbc.Utils.NO_TRANSACTIONS;
-import static com.github.adejanovski.cassandra.jdbc.Utils.PROTOCOL;
-import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_ACTIVE_CQL_VERSION;
-import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_CONSISTENCY_LEVEL;
-import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_CQL_VERSION;
-import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_DATABASE_NAME;
-import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_DEBUG;
-import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_USER;
 import static com.github.adejanovski.cassandra.jdbc.Utils.WAS_CLOSED_CON;
-import static com.github.adejanovski.cassandra.jdbc.Utils.createSubName;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -42,25 +34,22 @@ import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.ConsistencyLevel;
-import com.datastax.driver.core.Host;
 import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ProtocolOptions.Compression;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.UserType;
-import com.google.common.collect.Maps;
+import com.google.common.cache.CacheStats;
 
 /**
  * Implementation class for {@link Connection}.
@@ -77,10 +66,8 @@ public class CassandraConnection extends AbstractConnection implements Connectio
     public static volatile int DB_REVISION = 2;
     public static final String DB_PRODUCT_NAME = "Cassandra";
     public static final String DEFAULT_CQL_VERSION = "3.0.0";
-    public ConcurrentMap<String, CassandraPreparedStatement> preparedStatements = Maps
-            .newConcurrentMap();
-
-    public static Compression defaultCompression = Compression.LZ4;
+    /** compression of the frames of sessions with no compression option */
+    public static Compression defaultCompression = Compression.NONE;
 
     private final boolean autoCommit = true;
 
@@ -123,6 +110,46 @@ public class CassandraConnection extends AbstractConnection implements Connectio
 
     public ConsistencyLevel defaultConsistencyLevel;
 
+    /**
+     * Maximum number of statements of a multi-statement query kept in flight at once.
+     */
+    int maxInFlight;
+
+    /**
+     * Count of rows left in the current page of a result set below which the next page is fetched
+     * in the background, 0 to only fetch it when the rows run out.
+     */
+    int prefetchThreshold;
+
+    /**
+     * Tunes the fetch size of the pages of result sets, null if it stays the one of the statement.
+     * Each result set works on its own copy.
+     */
+    FetchSizeTuner fetchSizeTuner;
+
+    /**
+     * Size in bytes of the rows a scrollable result set keeps in memory before spilling them to a
+     * temporary file.
+     */
+    int spillThreshold;
+
+    /**
+     * How result sets return the values of collection columns.
+     */
+    ColumnAccessor.CollectionMode collectionMode;
+
+    /**
+     * Whether the variables of a prepared statement that were not bound are left unset rather than
+     * set to null, which would write tombstones. Only possible from protocol v4 on.
+     */
+    boolean unsetUnboundParameters;
+
+    /**
+     * Groups the rows of prepared statement batches by partition, null if they are executed one
+     * by one.
+     */
+    PartitionBatcher partitionBatcher;
+
     /**
      * Instantiates a new CassandraConnection.
      *
@@ -131,52 +158,26 @@ public class CassandraConnection extends AbstractConnection implements Connectio
      */
     public CassandraConnection(SessionHolder sessionHolder) throws SQLException {
         this.sessionHolder = sessionHolder;
-        Properties props = sessionHolder.properties;
+        ConnectionSettings settings = sessionHolder.settings;
 
-        debugMode = props.getProperty(TAG_DEBUG, "").equals("true");
+        debugMode = settings.debugMode;
         hostListPrimary = new TreeSet<String>();
         hostListBackup = new TreeSet<String>();
-        connectionProps = (Properties) props.clone();
-        clientInfo = new Properties();
-        url = PROTOCOL + createSubName(props);
-        currentKeyspace = props.getProperty(TAG_DATABASE_NAME);
-        username = props.getProperty(TAG_USER, "");
-        String version = props.getProperty(TAG_CQL_VERSION, DEFAULT_CQL_VERSION);
-        connectionProps.setProperty(TAG_ACTIVE_CQL_VERSION, version);
-        majorCqlVersion = getMajor(version);
-        defaultConsistencyLevel = ConsistencyLevel
-                .valueOf(props.getProperty(TAG_CONSISTENCY_LEVEL, ConsistencyLevel.ONE.name()));
+        url = settings.url;
+        currentKeyspace = settings.keyspace;
+        username = settings.username;
+        majorCqlVersion = settings.majorCqlVersion;
+        defaultConsistencyLevel = settings.defaultConsistencyLevel;
+        maxInFlight = settings.maxInFlight;
+        prefetchThreshold = settings.prefetchThreshold;
+        spillThreshold = settings.spillThreshold;
+        collectionMode = settings.collectionMode;
+        fetchSizeTuner = settings.fetchSizeTuner;
+        unsetUnboundParameters = settings.unsetUnboundParameters;
+        partitionBatcher = settings.partitionBatcher;
 
         cSession = sessionHolder.session;
-
         metadata = cSession.getCluster().getMetadata();
-        logger.info("Connected to cluster: %s\n", metadata.getClusterName());
-        for (Host aHost : metadata.getAllHosts()) {
-            logger.info("Datacenter: %s; Host: %s; Rack: %s\n", aHost.getDatacenter(),
-                    aHost.getAddress(), aHost.getRack());
-        }
-
-        Iterator<Host> hosts = metadata.getAllHosts().iterator();
-        if (hosts.hasNext()) {
-            Host firstHost = hosts.next();
-            // TODO this is shared among all Connections, what if they belong to different clusters?
-            CassandraConnection.DB_MAJOR_VERSION = firstHost.getCassandraVersion().getMajor();
-            CassandraConnection.DB_MINOR_VERSION = firstHost.getCassandraVersion().getMinor();
-            CassandraConnection.DB_REVISION = firstHost.getCassandraVersion().getPatch();
-        }
-    }
-
-    // get the Major portion of a string like : Major.minor.patch where 2 is the default
-    @SuppressWarnings("boxing")
-    private final int getMajor(String version) {
-        int major = 0;
-        String[] parts = version.split("\\.");
-        try {
-            major = Integer.valueOf(parts[0]);
-        } catch (Exception e) {
-            major = 2;
-        }
-        return major;
     }
 
     private final void checkNotClosed() throws SQLException {
@@ -235,6 +236,9 @@ public class CassandraConnection extends AbstractConnection implements Connectio
     }
 
     public Properties getConnectionProps() {
+        // copied on demand, the properties of the session are shared by its connections
+        if (connectionProps == null)
+            connectionProps = (Properties) sessionHolder.settings.connectionProps.clone();
         return connectionProps;
     }
 
@@ -322,18 +326,9 @@ public class CassandraConnection extends AbstractConnection implements Connectio
     }
 
     public CassandraPreparedStatement prepareStatement(String cql) throws SQLException {
-        CassandraPreparedStatement prepStmt = preparedStatements.get(cql);
-        if (prepStmt == null) {
-            // Statement didn't exist
-            prepStmt = preparedStatements.putIfAbsent(cql,
-                    prepareStatement(cql, DEFAULT_TYPE, DEFAULT_CONCURRENCY, DEFAULT_HOLDABILITY));
-            if (prepStmt == null) {
-                // Statement has already been created by another thread, so we'll just get it
-                return preparedStatements.get(cql);
-            }
-        }
-
-        return prepStmt;
+        // every call gets its own statement to bind values to, what is shared between statements
+        // for the same CQL is cached by the session
+        return prepareStatement(cql, DEFAULT_TYPE, DEFAULT_CONCURRENCY, DEFAULT_HOLDABILITY);
     }
 
     public CassandraPreparedStatement prepareStatement(String cql, int rsType) throws SQLException {
@@ -417,7 +412,7 @@ public class CassandraConnection extends AbstractConnection implements Connectio
     public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("CassandraConnection [connectionProps=");
-        builder.append(connectionProps);
+        builder.append(getConnectionProps());
         builder.append("]");
         return builder.toString();
     }
@@ -430,6 +425,66 @@ public class CassandraConnection extends AbstractConnection implements Connectio
         return metadata;
     }
 
+    /**
+     * Returns the statistics of the cache of prepared statements shared by all the connections
+     * using the same session: hits, misses (statements actually prepared) and evictions.
+     */
+    public CacheStats getPreparedStatementCacheStats() {
+        return sessionHolder.preparedStatementStats();
+    }
+
+    /**
+     * Returns the count of bytes received from the cluster by all the connections
+     * sharing it, as they came on the wire: compressed when compression is on.
+     */
+    public long getBytesReceived() {
+        return sessionHolder.traffic.bytesReceived.get();
+    }
+
+    /**
+     * Returns the count of bytes received from the cluster by all the connections
+     * sharing it, once decompressed.
+     */
+    public long getUncompressedBytesReceived() {
+        return sessionHolder.traffic.uncompressedBytesReceived.get();
+    }
+
+    /**
+     * Returns the count of bytes sent to the cluster by all the connections
+     * sharing it, as they went on the wire: compressed when compression is on.
+     */
+    public long getBytesSent() {
+        return sessionHolder.traffic.bytesSent.get();
+    }
+
+    /**
+     * Returns the count of bytes sent to the cluster by all the connections
+     * sharing it, before compression.
+     */
+    public long getUncompressedBytesSent() {
+        return sessionHolder.traffic.uncompressedBytesSent.get();
+    }
+
+    PreparedPlan prepare(String cql) throws SQLException {
+        return sessionHolder.prepare(cql);
+    }
+
+    AutoParameterizer getAutoParameterizer() {
+        return sessionHolder.autoParameterizer;
+    }
+
+    /**
+     * Returns the statistics of the automatic parameterization of ad-hoc statements: a hit is a
+     * statement executed with an already prepared shape, a miss a statement that could be
+     * parameterized but was not prepared yet.
+     *
+     * @return the statistics, or null if the automatic parameterization is not enabled
+     */
+    public CacheStats getAutoPrepareStats() {
+        AutoParameterizer autoParameterizer = sessionHolder.autoParameterizer;
+        return autoParameterizer == null ? null : autoParameterizer.stats();
+    }
+
     public Map<String, Class<?>> getTypeMap() throws SQLException {
         HashMap<String, Class<?>> typeMap = new HashMap<String, Class<?>>();
         logger.info("current KS : " + currentKeyspace);
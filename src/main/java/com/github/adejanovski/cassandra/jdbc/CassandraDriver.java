@@ -16,7 +16,24 @@ package com.github.adejanovski.cassandra.jdbc;
 
 import static com.github.adejanovski.cassandra.jdbc.Utils.NOT_SUPPORTED;
 import static com.github.adejanovski.cassandra.jdbc.Utils.PROTOCOL;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_CONNECT_TIMEOUT;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_CORE_CONNECTIONS_PER_HOST;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_HEARTBEAT_INTERVAL;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_KEEP_ALIVE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_MAX_CONNECTIONS_PER_HOST;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_MAX_QUEUE_SIZE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_MAX_REQUESTS_PER_CONNECTION;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_MIN_IDLE_SESSIONS;
 import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_PASSWORD;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_POOL_TIMEOUT;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_READ_TIMEOUT;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_RECEIVE_BUFFER_SIZE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_REMOTE_CORE_CONNECTIONS_PER_HOST;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_REMOTE_MAX_CONNECTIONS_PER_HOST;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_REMOTE_MAX_REQUESTS_PER_CONNECTION;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_SEND_BUFFER_SIZE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_SESSION_IDLE_TIMEOUT;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_TCP_NO_DELAY;
 import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_USER;
 
 import java.sql.Connection;
@@ -48,6 +65,37 @@ public class CassandraDriver implements Driver {
 
     public static final String DVR_NAME = "Datastax JDBC Driver";
 
+    // the options of the sessions, their connections and sockets, with their description
+    private static final String[][] SESSION_PROPERTIES = {
+            { TAG_CORE_CONNECTIONS_PER_HOST,
+                    "Connections always open to each host of the local datacenter" },
+            { TAG_MAX_CONNECTIONS_PER_HOST,
+                    "Maximum count of connections to each host of the local datacenter" },
+            { TAG_MAX_REQUESTS_PER_CONNECTION,
+                    "Maximum count of requests in flight on a connection to a local host" },
+            { TAG_REMOTE_CORE_CONNECTIONS_PER_HOST,
+                    "Connections always open to each host of a remote datacenter" },
+            { TAG_REMOTE_MAX_CONNECTIONS_PER_HOST,
+                    "Maximum count of connections to each host of a remote datacenter" },
+            { TAG_REMOTE_MAX_REQUESTS_PER_CONNECTION,
+                    "Maximum count of requests in flight on a connection to a remote host" },
+            { TAG_HEARTBEAT_INTERVAL,
+                    "Seconds of inactivity after which a connection sends a heartbeat, 0 for none" },
+            { TAG_POOL_TIMEOUT,
+                    "Milliseconds a request waits for a connection when all of them are busy" },
+            { TAG_MAX_QUEUE_SIZE,
+                    "Maximum count of requests waiting for a connection" },
+            { TAG_CONNECT_TIMEOUT, "Milliseconds to establish a connection to a host" },
+            { TAG_READ_TIMEOUT, "Milliseconds a host has to answer a request" },
+            { TAG_KEEP_ALIVE, "Whether TCP keep alive is on, true by default" },
+            { TAG_TCP_NO_DELAY, "Whether Nagle's algorithm is off" },
+            { TAG_RECEIVE_BUFFER_SIZE, "Size in bytes of the socket receive buffers" },
+            { TAG_SEND_BUFFER_SIZE, "Size in bytes of the socket send buffers" },
+            { TAG_SESSION_IDLE_TIMEOUT,
+                    "Milliseconds a session stays open once unused, 0 to close it right away" },
+            { TAG_MIN_IDLE_SESSIONS,
+                    "Count of unused sessions kept open past their idle timeout" } };
+
     static {
         // Register the CassandraDriver with DriverManager
         try {
@@ -135,14 +183,24 @@ public class CassandraDriver implements Driver {
         if (props == null)
             props = new Properties();
 
-        DriverPropertyInfo[] info = new DriverPropertyInfo[2];
+        // the values given by the URL, unless the properties override them
+        Properties values = url != null && acceptsURL(url) ? Utils.parseURL(url) : new Properties();
+        values.putAll(props);
+
+        DriverPropertyInfo[] info = new DriverPropertyInfo[2 + SESSION_PROPERTIES.length];
 
-        info[0] = new DriverPropertyInfo(TAG_USER, props.getProperty(TAG_USER));
+        info[0] = new DriverPropertyInfo(TAG_USER, values.getProperty(TAG_USER));
         info[0].description = "The 'user' property";
 
-        info[1] = new DriverPropertyInfo(TAG_PASSWORD, props.getProperty(TAG_PASSWORD));
+        info[1] = new DriverPropertyInfo(TAG_PASSWORD, values.getProperty(TAG_PASSWORD));
         info[1].description = "The 'password' property";
 
+        for (int i = 0; i < SESSION_PROPERTIES.length; i++) {
+            String tag = SESSION_PROPERTIES[i][0];
+            info[2 + i] = new DriverPropertyInfo(tag, values.getProperty(tag));
+            info[2 + i].description = SESSION_PROPERTIES[i][1];
+        }
+
         return info;
     }
 
@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.sql.Blob;
 import java.sql.Date;
 import java.sql.ResultSet;
@@ -491,6 +492,32 @@ class CassandraMetadataResultSet extends AbstractResultSet implements CassandraR
         return curRowKey;
     }
 
+    public long getPrefetchHits() {
+        // metadata rows are all in memory
+        return 0;
+    }
+
+    public ByteBuffer getByteBuffer(int index) throws SQLException {
+        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    public ByteBuffer getByteBuffer(String name) throws SQLException {
+        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    public int nextBatch(ColumnarBatch batch) throws SQLException {
+        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    public String getPagingState() {
+        // metadata result sets are not paged
+        return null;
+    }
+
+    public long getPrefetchStalls() {
+        return 0;
+    }
+
     public List<?> getList(int index) throws SQLException {
         checkIndex(index);
         if (currentRow.getColumnDefinitions().getType(index - 1).isCollection()) {
@@ -878,7 +905,7 @@ class CassandraMetadataResultSet extends AbstractResultSet implements CassandraR
         throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
     }
 
-    public synchronized boolean next() throws SQLException {
+    public boolean next() throws SQLException {
         if (hasMoreRows()) {
             // populateColumns is called upon init to set up the metadata fields; so skip first call
             if (rowNumber != 0)
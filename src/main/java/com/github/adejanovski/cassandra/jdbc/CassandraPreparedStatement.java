@@ -22,7 +22,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.URL;
 import java.nio.ByteBuffer;
@@ -56,20 +55,47 @@ import org.slf4j.LoggerFactory;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.Duration;
 import com.datastax.driver.core.LocalDate;
-import com.datastax.driver.core.ResultSetFuture;
-import com.datastax.driver.core.exceptions.CodecNotFoundException;
+import com.datastax.driver.core.PagingState;
 import com.google.common.collect.Lists;
 import com.google.common.io.CharStreams;
 
 class CassandraPreparedStatement extends CassandraStatement implements PreparedStatement {
     private static final Logger LOG = LoggerFactory.getLogger(CassandraPreparedStatement.class);
 
-    /** the count of bound variable markers (?) encountered in the parse o the CQL server-side */
-    private int count;
+    /** the SQL types used to bind the values of each Java type, by setObject(int, Object) */
+    private static final Map<Class<?>, Integer> TARGET_TYPES = new HashMap<Class<?>, Integer>();
+
+    static {
+        TARGET_TYPES.put(java.lang.Long.class, Types.BIGINT);
+        TARGET_TYPES.put(java.io.ByteArrayInputStream.class, Types.BINARY);
+        TARGET_TYPES.put(java.lang.String.class, Types.VARCHAR);
+        TARGET_TYPES.put(java.lang.Boolean.class, Types.BOOLEAN);
+        TARGET_TYPES.put(java.sql.Date.class, Types.DATE);
+        TARGET_TYPES.put(java.lang.Double.class, Types.DOUBLE);
+        TARGET_TYPES.put(java.lang.Float.class, Types.FLOAT);
+        TARGET_TYPES.put(java.math.BigDecimal.class, Types.DECIMAL);
+        TARGET_TYPES.put(java.lang.Integer.class, Types.INTEGER);
+        TARGET_TYPES.put(java.lang.Short.class, Types.SMALLINT);
+        TARGET_TYPES.put(java.sql.Time.class, Types.TIME);
+        TARGET_TYPES.put(java.sql.Timestamp.class, Types.TIMESTAMP);
+        TARGET_TYPES.put(java.lang.Byte.class, Types.TINYINT);
+        TARGET_TYPES.put(java.util.UUID.class, Types.ROWID);
+    }
+
+    /** the driver prepared statement and its variables, shared with the other statements */
+    private final PreparedPlan plan;
+
+    /** the count of bound variables of the prepared CQL */
+    private final int count;
+
+    /** the binders converting the values to the types of the variables, shared with the plan */
+    private final VariableBinder[] binders;
 
     /** a Map of the current bound values encountered in setXXX methods */
     private Map<Integer, Object> bindValues = new LinkedHashMap<Integer, Object>();
-    private com.datastax.driver.core.PreparedStatement stmt;
+
+    /** the count of variables left unset by the last execution */
+    private int unsetParameterCount;
 
     private BoundStatement statement;
     private ArrayList<BoundStatement> batchStatements;
@@ -86,14 +112,11 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
 
         LOG.trace("CQL: {}", this.cql);
 
-        try {
-            stmt = this.connection.getSession().prepare(cql);
-            this.statement = new BoundStatement(stmt);
-            batchStatements = Lists.newArrayList();
-            count = cql.length() - cql.replace("?", "").length();
-        } catch (Exception e) {
-            throw new SQLTransientException(e);
-        }
+        plan = this.connection.prepare(cql);
+        count = plan.count;
+        binders = plan.binders;
+        statement = plan.bind();
+        batchStatements = Lists.newArrayList();
     }
 
     String getCql() {
@@ -122,18 +145,16 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
     private void doExecute() throws SQLException {
         LOG.trace("CQL: {}", cql);
 
+        PagingState resumeFrom = pagingState;
+        pagingState = null;
+        resume(this.statement, resumeFrom);
         try {
             resetResults();
-            if (this.statement.getFetchSize() == 0)
-                // force paging to avoid timeout and node harm...
-                this.statement.setFetchSize(100);
+            // the fetch size of the statement, forcing paging when it is 0 to avoid timeout and
+            // node harm...
+            this.statement.setFetchSize(this.fetchSize != 0 ? this.fetchSize : 100);
             this.statement.setConsistencyLevel(this.connection.defaultConsistencyLevel);
-            for (int i = 0; i < this.statement.preparedStatement().getVariables().size(); i++) {
-                // Set parameters to null if unset
-                if (!this.statement.isSet(i)) {
-                    this.statement.setToNull(i);
-                }
-            }
+            unsetParameterCount = bindUnboundParameters(this.statement);
             currentResultSet = new CassandraResultSet(this,
                     this.connection.getSession().execute(this.statement));
         } catch (Exception e) {
@@ -141,53 +162,81 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
         }
     }
 
+    /**
+     * Sets the variables that were not bound to null, or leaves them unset (so that no tombstone
+     * is written) if the connection allows it.
+     *
+     * @return the count of variables left unset
+     */
+    private int bindUnboundParameters(BoundStatement bound) {
+        int unset = 0;
+        for (int i = 0; i < count; i++) {
+            if (!bound.isSet(i)) {
+                if (connection.unsetUnboundParameters)
+                    unset++;
+                else
+                    bound.setToNull(i);
+            }
+        }
+        return unset;
+    }
+
+    @Override
+    public int getUnsetParameterCount() {
+        return unsetParameterCount;
+    }
+
     public void addBatch() throws SQLException {
         batchStatements.add(statement);
-        this.statement = new BoundStatement(stmt);
-        if (batchStatements.size() > MAX_ASYNC_QUERIES) {
-            throw new SQLNonTransientException("Too many queries at once (" + batchStatements.size()
-                    + "). You must split your queries into more batches !");
-        }
+        this.statement = plan.bind();
     }
 
     public int[] executeBatch() throws SQLException {
-        int[] returnCounts = new int[batchStatements.size()];
-        try {
-            List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+        checkNotClosed();
+        final List<BoundStatement> rows = batchStatements;
+        // empty batch statement list before execution, whatever its outcome
+        batchStatements = Lists.newArrayList();
+
+        LOG.trace("# BatchStatements: {}", rows.size());
 
-            LOG.trace("# BatchStatements: {}", batchStatements.size());
+        unsetParameterCount = 0;
+        for (BoundStatement q : rows) {
+            unsetParameterCount += bindUnboundParameters(q);
+            q.setConsistencyLevel(this.connection.defaultConsistencyLevel);
+        }
 
-            for (BoundStatement q : batchStatements) {
-                for (int i = 0; i < q.preparedStatement().getVariables().size(); i++) {
-                    // Set parameters to null if unset
-                    if (!q.isSet(i)) {
-                        q.setToNull(i);
-                    }
+        if (this.connection.partitionBatcher == null) {
+            return executeBatch(new StatementPipeline.StatementSource() {
+                @Override
+                public int size() {
+                    return rows.size();
                 }
-                LOG.trace("CQL: {}", cql);
 
-                q.setConsistencyLevel(this.connection.defaultConsistencyLevel);
+                @Override
+                public com.datastax.driver.core.Statement get(int index) {
+                    return rows.get(index);
+                }
+            }, rows.size(), null);
+        }
 
-                ResultSetFuture resultSetFuture = this.connection.getSession().executeAsync(q);
-                futures.add(resultSetFuture);
+        final List<PartitionBatcher.Group> groups = this.connection.partitionBatcher.group(rows);
+        LOG.trace("# Partition batches: {}", groups.size());
+        int[][] groupRows = new int[groups.size()][];
+        for (int i = 0; i < groupRows.length; i++)
+            groupRows[i] = groups.get(i).rows;
+        return executeBatch(new StatementPipeline.StatementSource() {
+            @Override
+            public int size() {
+                return groups.size();
             }
 
-            int i = 0;
-            for (ResultSetFuture future : futures) {
-                future.getUninterruptibly();
-                returnCounts[i] = 1;
-                i++;
+            @Override
+            public com.datastax.driver.core.Statement get(int index) {
+                com.datastax.driver.core.Statement statement = groups.get(index).statement;
+                statement.setConsistencyLevel(connection.defaultConsistencyLevel);
+                return statement;
             }
-
-            // empty batch statement list after execution
-            batchStatements = Lists.newArrayList();
-        } catch (Exception e) {
-            // empty batch statement list after execution even if it failed...
-            batchStatements = Lists.newArrayList();
-            throw new SQLTransientException(e);
-        }
-
-        return returnCounts;
+        }, rows.size(), groupRows);
     }
 
     public void clearParameters() throws SQLException {
@@ -240,7 +289,7 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
     public void setByte(int parameterIndex, byte b) throws SQLException {
         checkNotClosed();
         checkIndex(parameterIndex);
-        this.statement.setByte(parameterIndex, b);
+        binders[parameterIndex - 1].bindInt(this.statement, parameterIndex - 1, b);
     }
 
     public void setBytes(int parameterIndex, byte[] bytes) throws SQLException {
@@ -285,24 +334,16 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
         this.statement.setFloat(parameterIndex - 1, decimal);
     }
 
-    @SuppressWarnings("cast")
     public void setInt(int parameterIndex, int integer) throws SQLException {
         checkNotClosed();
         checkIndex(parameterIndex);
-        try {
-            this.statement.setInt(parameterIndex - 1, integer);
-        } catch (CodecNotFoundException e) {
-            if (e.getMessage().contains(
-                    "Codec not found for requested operation: [varint <-> java.lang.Integer]")) {
-                this.statement.setVarint(parameterIndex - 1, BigInteger.valueOf((long) integer));
-            }
-        }
+        binders[parameterIndex - 1].bindInt(this.statement, parameterIndex - 1, integer);
     }
 
     public void setLong(int parameterIndex, long bigint) throws SQLException {
         checkNotClosed();
         checkIndex(parameterIndex);
-        this.statement.setLong(parameterIndex - 1, bigint);
+        binders[parameterIndex - 1].bindLong(this.statement, parameterIndex - 1, bigint);
     }
 
     public void setNString(int parameterIndex, String value) throws SQLException {
@@ -323,42 +364,18 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
     }
 
     public void setObject(int parameterIndex, Object object) throws SQLException {
-
-        int targetType = 0;
-        if (object.getClass().equals(java.lang.Long.class)) {
-            targetType = Types.BIGINT;
-        } else if (object.getClass().equals(java.io.ByteArrayInputStream.class)) {
-            targetType = Types.BINARY;
-        } else if (object.getClass().equals(java.lang.String.class)) {
-            targetType = Types.VARCHAR;
-        } else if (object.getClass().equals(java.lang.Boolean.class)) {
-            targetType = Types.BOOLEAN;
-        } else if (object.getClass().equals(java.sql.Date.class)) {
-            targetType = Types.DATE;
-        } else if (object.getClass().equals(java.lang.Double.class)) {
-            targetType = Types.DOUBLE;
-        } else if (object.getClass().equals(java.lang.Float.class)) {
-            targetType = Types.FLOAT;
-        } else if (object.getClass().equals(java.math.BigDecimal.class)) {
-            targetType = Types.DECIMAL;
-        } else if (object.getClass().equals(java.net.Inet4Address.class)) {
-            targetType = Types.OTHER;
-        } else if (object.getClass().equals(java.lang.Integer.class)) {
-            targetType = Types.INTEGER;
-        } else if (object.getClass().equals(java.sql.Time.class)) {
-            targetType = Types.TIME;
-        } else if (object.getClass().equals(java.sql.Timestamp.class)) {
-            targetType = Types.TIMESTAMP;
-        } else if (object.getClass().equals(java.lang.Byte.class)) {
-            targetType = Types.TINYINT;
-        } else if (object.getClass().equals(java.lang.String.class)) {
-            targetType = Types.VARCHAR;
-        } else if (object.getClass().equals(java.util.UUID.class)) {
-            targetType = Types.ROWID;
-        } else {
-            targetType = Types.OTHER;
+        checkNotClosed();
+        checkIndex(parameterIndex);
+        if (object == null) {
+            this.statement.setToNull(parameterIndex - 1);
+            return;
         }
-        setObject(parameterIndex, object, targetType, 0);
+        // values that already have the Java type of the variable are bound as is
+        if (binders[parameterIndex - 1].bindObject(this.statement, parameterIndex - 1, object))
+            return;
+
+        Integer targetType = TARGET_TYPES.get(object.getClass());
+        setObject(parameterIndex, object, targetType == null ? Types.OTHER : targetType, 0);
     }
 
     public void setObject(int parameterIndex, Object object, int targetSqlType)
@@ -374,10 +391,12 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
 
         switch (targetSqlType) {
             case Types.VARCHAR:
-                this.statement.setString(parameterIndex - 1, object.toString());
+                binders[parameterIndex - 1].bindString(this.statement, parameterIndex - 1,
+                        object.toString());
                 break;
             case Types.BIGINT:
-                this.statement.setLong(parameterIndex - 1, Long.parseLong(object.toString()));
+                binders[parameterIndex - 1].bindLong(this.statement, parameterIndex - 1,
+                        Long.parseLong(object.toString()));
                 break;
             case Types.BINARY:
                 byte[] array = new byte[((java.io.ByteArrayInputStream) object).available()];
@@ -392,10 +411,9 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
                 this.statement.setBool(parameterIndex - 1, (Boolean) object);
                 break;
             case Types.CHAR:
-                this.statement.setString(parameterIndex - 1, object.toString());
-                break;
             case Types.CLOB:
-                this.statement.setString(parameterIndex - 1, object.toString());
+                binders[parameterIndex - 1].bindString(this.statement, parameterIndex - 1,
+                        object.toString());
                 break;
             case Types.DATE:
                 if (object == null) {
@@ -415,17 +433,9 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
                 this.statement.setFloat(parameterIndex - 1, (Float) object);
                 break;
             case Types.INTEGER:
-                try {
-                    this.statement.setInt(parameterIndex - 1, (Integer) object);
-                } catch (CodecNotFoundException e) {
-                    if (e.getMessage().contains("varint")) { // sucks but works
-                        this.statement.setVarint(parameterIndex - 1,
-                                BigInteger.valueOf(Long.parseLong(object.toString())));
-                    }
-                }
-                break;
             case Types.SMALLINT:
-                this.statement.setShort(parameterIndex - 1, (Short) object);
+                binders[parameterIndex - 1].bindInt(this.statement, parameterIndex - 1,
+                        ((Number) object).intValue());
                 break;
             case Types.TIME:
                 if (object == null) {
@@ -440,7 +450,8 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
                 this.statement.setTimestamp(parameterIndex - 1, (Timestamp) object);
                 break;
             case Types.TINYINT:
-                this.statement.setByte(parameterIndex - 1, (Byte) object);
+                binders[parameterIndex - 1].bindInt(this.statement, parameterIndex - 1,
+                        (Byte) object);
                 break;
             case Types.ROWID:
                 this.statement.setUUID(parameterIndex - 1, (java.util.UUID) object);
@@ -480,33 +491,13 @@ class CassandraPreparedStatement extends CassandraStatement implements PreparedS
     public void setShort(int parameterIndex, short smallint) throws SQLException {
         checkNotClosed();
         checkIndex(parameterIndex);
-        this.statement.setInt(parameterIndex - 1, smallint);
+        binders[parameterIndex - 1].bindInt(this.statement, parameterIndex - 1, smallint);
     }
 
     public void setString(int parameterIndex, String value) throws SQLException {
         checkNotClosed();
         checkIndex(parameterIndex);
-        try {
-            this.statement.setString(parameterIndex - 1, value);
-        } catch (CodecNotFoundException e) {
-            // Big ugly hack in order to parse string representations of collections
-            // Yes, I'm ashamed...
-            if (e.getMessage().contains("set<")) {
-                String itemType = e.getMessage().substring(e.getMessage().indexOf("<") + 1,
-                        e.getMessage().indexOf(">"));
-                this.statement.setSet(parameterIndex - 1, Utils.parseSet(itemType, value));
-            } else if (e.getMessage().contains("list<")) {
-                String itemType = e.getMessage().substring(e.getMessage().indexOf("<") + 1,
-                        e.getMessage().indexOf(">"));
-                this.statement.setList(parameterIndex - 1, Utils.parseList(itemType, value));
-            } else if (e.getMessage().contains("map<")) {
-                String[] kvTypes = e.getMessage()
-                        .substring(e.getMessage().indexOf("<") + 1, e.getMessage().indexOf(">"))
-                        .replace(" ", "").split(",");
-                this.statement.setMap(parameterIndex - 1,
-                        Utils.parseMap(kvTypes[0], kvTypes[1], value));
-            }
-        }
+        binders[parameterIndex - 1].bindString(this.statement, parameterIndex - 1, value);
     }
 
     @SuppressWarnings("boxing")
@@ -24,7 +24,7 @@ import static com.github.adejanovski.cassandra.jdbc.Utils.NO_INTERFACE;
 import static com.github.adejanovski.cassandra.jdbc.Utils.VALID_LABELS;
 import static com.github.adejanovski.cassandra.jdbc.Utils.WAS_CLOSED_RSLT;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -40,29 +40,36 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLNonTransientException;
 import java.sql.SQLRecoverableException;
 import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransientException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Calendar;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.ColumnDefinitions.Definition;
+import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ExecutionInfo;
 import com.datastax.driver.core.LocalDate;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.exceptions.InvalidTypeException;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.datastax.driver.core.utils.Bytes;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * <p>
@@ -165,7 +172,8 @@ import com.google.common.collect.Sets;
  * <td>Arbitrary-precision integer</td>
  * </tr>
  * </table>
- *
+ * <p>
+ * Like any JDBC result set, it is meant to be used by one thread at a time and takes no lock.
  */
 class CassandraResultSet extends AbstractResultSet implements CassandraResultSetExtras {
     private static final Logger logger = LoggerFactory.getLogger(CassandraResultSet.class);
@@ -179,11 +187,68 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     private Row currentRow;
 
     /**
-     * The rows iterator.
+     * The rows iterator, and the driver result set it iterates.
      */
-    private int currentIteratorIndex = 0;
     private Iterator<Row> rowsIterator;
-    private ArrayList<Iterator<Row>> rowsIterators;
+    private com.datastax.driver.core.ResultSet currentResult;
+
+    /**
+     * The next page is fetched in the background once fewer than this count of rows of the
+     * current page are left, 0 to only fetch it when the rows run out.
+     */
+    private final int prefetchThreshold;
+    private ListenableFuture<com.datastax.driver.core.ResultSet> pendingFetch;
+    private long prefetchHits;
+    private long prefetchStalls;
+
+    /**
+     * Picks the fetch size of the next pages, null if it stays the one of the statement. The time
+     * the last page fetched in the background took to come is set by the fetch itself.
+     */
+    private final FetchSizeTuner fetchSizeTuner;
+    private volatile long fetchNanos;
+    private int fetchedSize;
+
+    /**
+     * The driver statement whose fetch size was tuned, and its fetch size before, set back once
+     * its rows are read or the result set is closed: prepared statements reuse theirs.
+     */
+    private com.datastax.driver.core.Statement tunedStatement;
+    private int untunedFetchSize;
+
+    /**
+     * The pages of the current result that hold rows not read yet: the count of rows of the
+     * result up to the end of each one, and the paging state after it. A page is recorded when no
+     * page is being fetched in the background, so that its rows are all there.
+     */
+    private final Deque<PageEnd> pageEnds = new ArrayDeque<PageEnd>();
+    private ExecutionInfo lastPage;
+    private long rowsRead;
+
+    /**
+     * The statements still feeding this result set when it merges the results of several queries,
+     * and the index of the next one to read from.
+     */
+    private StatementPipeline pipeline;
+    private int nextResultIndex;
+
+    /**
+     * The rows read so far, for scrollable result sets only: null for forward only ones.
+     */
+    private final RowStore rowStore;
+
+    /**
+     * How the values of collection columns are returned, with the protocol version to read the
+     * size of lazy ones.
+     */
+    private final ColumnAccessor.CollectionMode collectionMode;
+    private final ProtocolVersion protocolVersion;
+
+    /**
+     * Whether the cursor was moved to the current row by a columnar batch that could not take it,
+     * so that next() stays on it.
+     */
+    private boolean rowHeld;
 
     int rowNumber = 0;
     // the current row key when iterating through results.
@@ -203,11 +268,19 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
 
     private com.datastax.driver.core.ResultSet driverResultSet;
 
+    /** the columns of the current row, see {@link #columns()} */
+    private ResultColumns columns;
+
     /**
      * no argument constructor.
      */
     CassandraResultSet() {
         statement = null;
+        prefetchThreshold = 0;
+        fetchSizeTuner = null;
+        rowStore = null;
+        collectionMode = null;
+        protocolVersion = null;
         meta = new CResultSetMetaData();
     }
 
@@ -221,13 +294,19 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
         this.fetchDirection = statement.getFetchDirection();
         this.fetchSize = statement.getFetchSize();
         this.driverResultSet = resultSet;
-        this.rowsIterators = Lists.newArrayList();
-        this.currentIteratorIndex = 0;
+        this.prefetchThreshold = statement.prefetchThreshold();
+        this.fetchSizeTuner = statement.newFetchSizeTuner();
+        this.rowStore = isScrollable(resultSetType) ? statement.newRowStore() : null;
+        this.collectionMode = statement.collectionMode();
+        this.protocolVersion = collectionMode == ColumnAccessor.CollectionMode.LAZY
+                ? statement.protocolVersion() : null;
 
         // Initialize meta-data from schema
         populateMetaData();
 
+        currentResult = resultSet;
         rowsIterator = resultSet.iterator();
+        trackPages();
 
         if (hasMoreRows()) {
             populateColumns();
@@ -237,33 +316,32 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     /**
-     * Instantiates a new cassandra result set from a com.datastax.driver.core.ResultSet.
+     * Instantiates a new cassandra result set merging the rows of all the statements run by a
+     * pipeline, in statement order.
+     * <p>
+     * Only the result of the first statement is awaited here, the results of the next ones are
+     * picked up as the rows of the previous ones run out, so rows can be read while later
+     * statements are still running.
      */
-    CassandraResultSet(CassandraStatement statement,
-            ArrayList<com.datastax.driver.core.ResultSet> resultSets) throws SQLException {
+    CassandraResultSet(CassandraStatement statement, StatementPipeline pipeline)
+            throws SQLException {
         this.statement = statement;
         this.resultSetType = statement.getResultSetType();
         this.fetchDirection = statement.getFetchDirection();
         this.fetchSize = statement.getFetchSize();
+        this.pipeline = pipeline;
+        this.prefetchThreshold = statement.prefetchThreshold();
+        this.fetchSizeTuner = statement.newFetchSizeTuner();
+        this.rowStore = isScrollable(resultSetType) ? statement.newRowStore() : null;
+        this.collectionMode = statement.collectionMode();
+        this.protocolVersion = collectionMode == ColumnAccessor.CollectionMode.LAZY
+                ? statement.protocolVersion() : null;
 
         // We have several result sets, but we will use only the first one for metadata needs
-        this.driverResultSet = resultSets.get(0);
-
-        currentIteratorIndex = 0;
-
+        this.driverResultSet = nextResult();
+        currentResult = driverResultSet;
         rowsIterator = driverResultSet.iterator();
-        for (int i = 1; i < resultSets.size(); i++) {
-            rowsIterator = Iterators.concat(rowsIterator, resultSets.get(i).iterator()); // this
-                                                                                         // leads to
-                                                                                         // Stack
-                                                                                         // Overflow
-                                                                                         // Exception
-                                                                                         // when
-                                                                                         // there
-                                                                                         // are too
-                                                                                         // many
-                                                                                         // resultSets
-        }
+        trackPages();
 
         // Initialize to column values from the first row
         if (hasMoreRows()) {
@@ -273,9 +351,43 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
         meta = new CResultSetMetaData();
     }
 
-    private final boolean hasMoreRows() {
-        return (rowsIterator != null
-                && (rowsIterator.hasNext() || (rowNumber == 0 && currentRow != null)));
+    private com.datastax.driver.core.ResultSet nextResult() throws SQLException {
+        int index = nextResultIndex++;
+        try {
+            return pipeline.take(index);
+        } catch (ExecutionException e) {
+            throw new SQLTransientException(
+                    "Statement " + (index + 1) + " failed: " + e.getCause().getMessage(),
+                    e.getCause());
+        } catch (CancellationException e) {
+            throw new SQLTransientException("Statement " + (index + 1) + " was cancelled", e);
+        }
+    }
+
+    /**
+     * Moves on to the results of the next statements until one has rows left, if any.
+     *
+     * @return whether the rows iterator has a next row
+     */
+    private boolean advance() throws SQLException {
+        while (!rowsIterator.hasNext()) {
+            if (pipeline == null || nextResultIndex >= pipeline.size()) {
+                restoreFetchSize();
+                return false;
+            }
+            currentResult = nextResult();
+            rowsIterator = currentResult.iterator();
+            pendingFetch = null;
+            pageEnds.clear();
+            lastPage = null;
+            rowsRead = 0;
+            trackPages();
+        }
+        return true;
+    }
+
+    private final boolean hasMoreRows() throws SQLException {
+        return (rowsIterator != null && ((rowNumber == 0 && currentRow != null) || advance()));
     }
 
     private final void populateMetaData() {
@@ -283,24 +395,264 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
 
     }
 
-    private final void populateColumns() {
-        currentRow = rowsIterator.next();
+    private final void populateColumns() throws SQLException {
+        if (prefetch() && fetchSizeTuner != null) {
+            // the iterator blocks until the next page is there
+            long start = System.nanoTime();
+            currentRow = rowsIterator.next();
+            fetchSizeTuner.samplePage(System.nanoTime() - start, fetchedSize);
+        } else
+            currentRow = rowsIterator.next();
+        rowsRead++;
+        if (pendingFetch == null)
+            trackPages();
+        if (rowStore != null) {
+            try {
+                rowStore.add(currentRow);
+            } catch (IOException e) {
+                throw new SQLNonTransientException("Could not keep the rows for scrolling", e);
+            }
+        }
+    }
+
+    private static boolean isScrollable(int resultSetType) {
+        return resultSetType == TYPE_SCROLL_INSENSITIVE || resultSetType == TYPE_SCROLL_SENSITIVE;
     }
 
-    public boolean absolute(int arg0) throws SQLException {
-        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    /**
+     * @return the position of the cursor of a scrollable result set: 0 before the first row, the
+     *         count of rows plus one after the last one
+     */
+    private int position() {
+        return rowNumber == Integer.MAX_VALUE ? rowStore.size() + 1 : rowNumber;
     }
 
-    public void afterLast() throws SQLException {
-        if (resultSetType == TYPE_FORWARD_ONLY)
+    /**
+     * Moves the cursor of a scrollable result set to a row, reading the rows up to it if they were
+     * not yet. Rows already read are read back from the row store.
+     *
+     * @param row the row, from 1; 0 or less to move before the first row
+     * @return whether the cursor is on a row
+     */
+    private boolean scrollTo(int row) throws SQLException {
+        Row read = null;
+        while (rowStore.size() < row && advance()) {
+            populateColumns();
+            read = currentRow;
+        }
+        if (row < 1) {
+            rowNumber = 0;
+            currentRow = null;
+            return false;
+        }
+        if (row > rowStore.size()) {
+            rowNumber = Integer.MAX_VALUE;
+            currentRow = null;
+            return false;
+        }
+        rowNumber = row;
+        if (read != null && row == rowStore.size())
+            // the row just read from the driver
+            currentRow = read;
+        else {
+            try {
+                currentRow = rowStore.get(row - 1);
+            } catch (IOException e) {
+                throw new SQLNonTransientException("Could not read back a row for scrolling", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the count of rows of a scrollable result set, once all are read
+     */
+    private int readAll() throws SQLException {
+        while (advance())
+            populateColumns();
+        return rowStore.size();
+    }
+
+    private void checkScrollable() throws SQLException {
+        if (rowStore == null)
             throw new SQLNonTransientException(FORWARD_ONLY);
-        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    }
+
+    /**
+     * Asks for the next page in the background once fewer than prefetchThreshold rows of the
+     * current one are left. Counts the pages that were there before the rows ran out (hits), and
+     * the times the rows ran out before the next page was there (stalls), the iterator then
+     * blocking until it is.
+     *
+     * @return whether the next row is the first one of a page yet to be fetched
+     */
+    private boolean prefetch() {
+        if (pendingFetch != null && pendingFetch.isDone()) {
+            prefetchHits++;
+            pendingFetch = null;
+            if (fetchSizeTuner != null)
+                fetchSizeTuner.samplePage(fetchNanos, fetchedSize);
+            trackPages();
+        }
+        if (currentResult.isFullyFetched())
+            return false;
+        int available = currentResult.getAvailableWithoutFetching();
+        if (available == 0) {
+            prefetchStalls++;
+            boolean fetching = pendingFetch != null;
+            pendingFetch = null;
+            if (fetching)
+                return false;
+            tuneFetchSize();
+            return true;
+        } else if (pendingFetch == null && available <= prefetchThreshold) {
+            tuneFetchSize();
+            fetchNanos = 0;
+            final long start = System.nanoTime();
+            pendingFetch = currentResult.fetchMoreResults();
+            if (fetchSizeTuner != null) {
+                pendingFetch.addListener(new Runnable() {
+                    public void run() {
+                        fetchNanos = System.nanoTime() - start;
+                    }
+                }, MoreExecutors.directExecutor());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the fetch size of the next page of the current result from the rows and pages seen so
+     * far. The driver reads the fetch size from the statement for each page it fetches.
+     */
+    private void tuneFetchSize() {
+        if (fetchSizeTuner == null)
+            return;
+        if (currentRow != null)
+            fetchSizeTuner.sampleRow(currentRow, currentRow.getColumnDefinitions().size());
+        com.datastax.driver.core.Statement driverStatement = currentResult.getExecutionInfo()
+                .getStatement();
+        if (driverStatement != tunedStatement) {
+            // the next statement of a merged result set
+            restoreFetchSize();
+            tunedStatement = driverStatement;
+            untunedFetchSize = driverStatement.getFetchSize();
+        }
+        fetchedSize = fetchSizeTuner.nextFetchSize(driverStatement.getFetchSize());
+        driverStatement.setFetchSize(fetchedSize);
+    }
+
+    /**
+     * Sets back the fetch size of the statement tuned last, if any. The pages asked for already
+     * keep the tuned size.
+     */
+    private void restoreFetchSize() {
+        if (tunedStatement != null) {
+            tunedStatement.setFetchSize(untunedFetchSize);
+            tunedStatement = null;
+        }
+    }
+
+    /**
+     * Records the page last fetched for the current result, if it was not yet. Only called when
+     * no page is being fetched in the background.
+     */
+    private void trackPages() {
+        ExecutionInfo page = currentResult.getExecutionInfo();
+        if (page == null || page == lastPage)
+            return;
+        lastPage = page;
+        pageEnds.add(new PageEnd(rowsRead + currentResult.getAvailableWithoutFetching(),
+                page.getPagingState()));
+        dropReadPages();
+    }
+
+    /**
+     * Forgets the pages before the one of the last row read, keeping the last page.
+     */
+    private void dropReadPages() {
+        while (pageEnds.size() > 1 && pageEnds.peekFirst().rows < rowsRead)
+            pageEnds.removeFirst();
+    }
+
+    public String getPagingState() {
+        if (currentResult == null)
+            return null;
+        dropReadPages();
+        // the end of the page of the last row read, not of pages fetched ahead of the reads
+        PageEnd page = pageEnds.peekFirst();
+        return Utils.formatPagingState(page != null ? page.pagingState
+                : currentResult.getExecutionInfo().getPagingState());
+    }
+
+    /**
+     * The end of a page of a result.
+     */
+    private static final class PageEnd {
+        final long rows;
+        final PagingState pagingState;
+
+        PageEnd(long rows, PagingState pagingState) {
+            this.rows = rows;
+            this.pagingState = pagingState;
+        }
+    }
+
+    public ByteBuffer getByteBuffer(int index) throws SQLException {
+        checkIndex(index);
+        ByteBuffer bytes = currentRow.getBytes(index - 1);
+        return (bytes == null) ? null : bytes.asReadOnlyBuffer();
+    }
+
+    public ByteBuffer getByteBuffer(String name) throws SQLException {
+        return getByteBuffer(findColumn(name));
+    }
+
+    public int nextBatch(ColumnarBatch batch) throws SQLException {
+        checkNotClosed();
+        batch.clear();
+        boolean first = true;
+        while (!batch.isFull() && next()) {
+            ColumnDefinitions definitions = currentRow.getColumnDefinitions();
+            if (first) {
+                batch.reset(definitions);
+                first = false;
+            } else if (!batch.accepts(definitions)) {
+                // the next statement of a merged result set, with other columns
+                rowHeld = true;
+                break;
+            }
+            batch.add(currentRow);
+        }
+        return batch.size();
+    }
+
+    public long getPrefetchHits() {
+        return prefetchHits;
+    }
+
+    public long getPrefetchStalls() {
+        return prefetchStalls;
+    }
+
+    public boolean absolute(int row) throws SQLException {
+        checkNotClosed();
+        checkScrollable();
+        if (row < 0)
+            return scrollTo(readAll() + 1 + row);
+        return scrollTo(row);
+    }
+
+    public void afterLast() throws SQLException {
+        checkNotClosed();
+        checkScrollable();
+        scrollTo(readAll() + 1);
     }
 
     public void beforeFirst() throws SQLException {
-        if (resultSetType == TYPE_FORWARD_ONLY)
-            throw new SQLNonTransientException(FORWARD_ONLY);
-        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+        checkNotClosed();
+        checkScrollable();
+        scrollTo(0);
     }
 
     private final void checkIndex(int index) throws SQLException {
@@ -308,32 +660,45 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
         if (currentRow != null) {
             wasNull = currentRow.isNull(index - 1);
             if (currentRow.getColumnDefinitions() != null) {
-                if (index < 1 || index > currentRow.getColumnDefinitions().asList().size())
+                if (index < 1 || index > currentRow.getColumnDefinitions().size())
                     throw new SQLSyntaxErrorException(
                             String.format(MUST_BE_POSITIVE, String.valueOf(index)) + " "
-                                    + currentRow.getColumnDefinitions().asList().size());
+                                    + currentRow.getColumnDefinitions().size());
             }
+        } else if (rowStore != null) {
+            // before the first row or after the last one of a scrollable result set
+            throw new SQLNonTransientException("no current row");
         } else if (driverResultSet != null) {
             if (driverResultSet.getColumnDefinitions() != null) {
-                if (index < 1 || index > driverResultSet.getColumnDefinitions().asList().size())
+                if (index < 1 || index > driverResultSet.getColumnDefinitions().size())
                     throw new SQLSyntaxErrorException(
                             String.format(MUST_BE_POSITIVE, String.valueOf(index)) + " "
-                                    + driverResultSet.getColumnDefinitions().asList().size());
+                                    + driverResultSet.getColumnDefinitions().size());
             }
         }
     }
 
-    private final void checkName(String name) throws SQLException {
-        if (currentRow != null) {
-            wasNull = currentRow.isNull(name);
-            if (!currentRow.getColumnDefinitions().contains(name))
-                throw new SQLSyntaxErrorException(String.format(VALID_LABELS, name));
-        } else if (driverResultSet != null) {
-            if (driverResultSet.getColumnDefinitions() != null) {
-                if (!driverResultSet.getColumnDefinitions().contains(name))
-                    throw new SQLSyntaxErrorException(String.format(VALID_LABELS, name));
-            }
-        }
+    /**
+     * @return the columns of the current row (or of the first result before the first row), which
+     *         are resolved again only when they change, from a statement to the next one of a
+     *         merged result set; null if there are none
+     */
+    private ResultColumns columns() {
+        ColumnDefinitions definitions;
+        if (currentRow != null)
+            definitions = currentRow.getColumnDefinitions();
+        else if (driverResultSet != null)
+            definitions = driverResultSet.getColumnDefinitions();
+        else
+            return null;
+        if (columns == null || columns.definitions != definitions)
+            columns = definitions == null ? null
+                    : new ResultColumns(definitions, collectionMode, protocolVersion);
+        return columns;
+    }
+
+    private ColumnAccessor accessor(int index) {
+        return columns().accessors[index - 1];
     }
 
     private final void checkNotClosed() throws SQLException {
@@ -350,18 +715,31 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
 
     public void close() throws SQLException {
         if (!isClosed()) {
+            restoreFetchSize();
+            if (rowStore != null) {
+                try {
+                    rowStore.close();
+                } catch (IOException e) {
+                    logger.warn("Error while closing the rows kept for scrolling", e);
+                }
+            }
             this.statement.close();
         }
     }
 
     public int findColumn(String name) throws SQLException {
         checkNotClosed();
-        checkName(name);
-        return currentRow.getColumnDefinitions().getIndexOf(name);
+        ResultColumns columns = columns();
+        int index = columns == null ? -1 : columns.indexOf(name);
+        if (index < 1)
+            throw new SQLSyntaxErrorException(String.format(VALID_LABELS, name));
+        return index;
     }
 
     public boolean first() throws SQLException {
-        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+        checkNotClosed();
+        checkScrollable();
+        return scrollTo(1);
     }
 
     public BigDecimal getBigDecimal(int index) throws SQLException {
@@ -377,15 +755,12 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public BigDecimal getBigDecimal(String name) throws SQLException {
-        checkName(name);
-        return currentRow.getDecimal(name);
+        return getBigDecimal(findColumn(name));
     }
 
     /** @deprecated */
     public BigDecimal getBigDecimal(String name, int scale) throws SQLException {
-        checkName(name);
-        BigDecimal bd = currentRow.getDecimal(name);
-        return (bd == null) ? null : bd.setScale(scale);
+        return getBigDecimal(findColumn(name), scale);
     }
 
     public BigInteger getBigInteger(int index) throws SQLException {
@@ -394,8 +769,7 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public BigInteger getBigInteger(String name) throws SQLException {
-        checkName(name);
-        return currentRow.getVarint(name);
+        return getBigInteger(findColumn(name));
     }
 
     public boolean getBoolean(int index) throws SQLException {
@@ -404,8 +778,7 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public boolean getBoolean(String name) throws SQLException {
-        checkName(name);
-        return currentRow.getBool(name);
+        return getBoolean(findColumn(name));
     }
 
     public byte getByte(int index) throws SQLException {
@@ -414,18 +787,18 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public byte getByte(String name) throws SQLException {
-        checkName(name);
-        return currentRow.getByte(name);
+        return getByte(findColumn(name));
     }
 
     public byte[] getBytes(int index) throws SQLException {
+        checkIndex(index);
         ByteBuffer bb = currentRow.getBytes(index - 1);
-        return (bb == null) ? null : bb.array();
+        // the whole backing array only when it holds the value and nothing else
+        return (bb == null) ? null : Bytes.getArray(bb);
     }
 
     public byte[] getBytes(String name) throws SQLException {
-        ByteBuffer bb = currentRow.getBytes(name);
-        return (bb == null) ? null : bb.array();
+        return getBytes(findColumn(name));
     }
 
     public int getConcurrency() throws SQLException {
@@ -442,47 +815,29 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     public Date getDate(int index, Calendar calendar) throws SQLException {
         checkIndex(index);
         // silently ignore the Calendar argument; its a hint we do not need
-        return getDate(index - 1);
+        return getDate(index);
     }
 
     public Date getDate(String name) throws SQLException {
-        checkName(name);
-        LocalDate date = currentRow.getDate(name);
-        return (date == null) ? null : new Date(date.getMillisSinceEpoch());
+        return getDate(findColumn(name));
     }
 
     public Date getDate(String name, Calendar calendar) throws SQLException {
-        checkName(name);
         // silently ignore the Calendar argument; its a hint we do not need
-        return getDate(name);
+        return getDate(findColumn(name));
     }
 
     public double getDouble(int index) throws SQLException {
         checkIndex(index);
-
         try {
-            if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                    .equals("float")) {
-                return currentRow.getFloat(index - 1);
-            }
-            return currentRow.getDouble(index - 1);
+            return accessor(index).getDouble(currentRow, index - 1);
         } catch (InvalidTypeException e) {
             throw new SQLNonTransientException(e);
         }
     }
 
-    @SuppressWarnings("cast")
     public double getDouble(String name) throws SQLException {
-        checkName(name);
-        try {
-            if (currentRow.getColumnDefinitions().getType(name).getName().toString()
-                    .equals("float")) {
-                return (double) currentRow.getFloat(name);
-            }
-            return currentRow.getDouble(name);
-        } catch (InvalidTypeException e) {
-            throw new SQLNonTransientException(e);
-        }
+        return getDouble(findColumn(name));
     }
 
     public int getFetchDirection() throws SQLException {
@@ -501,8 +856,7 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public float getFloat(String name) throws SQLException {
-        checkName(name);
-        return currentRow.getFloat(name);
+        return getFloat(findColumn(name));
     }
 
     public int getHoldability() throws SQLException {
@@ -521,12 +875,7 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public int getInt(String name) throws SQLException {
-        checkName(name);
-        try {
-            return currentRow.getInt(name);
-        } catch (NumberFormatException e) {
-            return 0;
-        }
+        return getInt(findColumn(name));
     }
 
     public byte[] getKey() throws SQLException {
@@ -534,340 +883,45 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public List<?> getList(int index) throws SQLException {
-        checkIndex(index);
-        if (currentRow.getColumnDefinitions().getType(index - 1).isCollection()) {
-            try {
-                return Lists.newArrayList(currentRow.getList(index - 1,
-                        Class.forName(DataTypeEnum
-                                .fromCqlTypeName(currentRow.getColumnDefinitions()
-                                        .getType(index - 1).getTypeArguments().get(0).getName())
-                                .asJavaClass().getCanonicalName())));
-            } catch (ClassNotFoundException e) {
-                logger.warn("Error while executing getList()", e);
-            }
-        }
-        return currentRow.getList(index - 1, String.class);
+        return (List<?>) getCollection(index, DataType.Name.LIST);
     }
 
     public List<?> getList(String name) throws SQLException {
-        checkName(name);
-        if (currentRow.getColumnDefinitions().getType(name).isCollection()) {
-            try {
-                return Lists.newArrayList(currentRow.getList(name,
-                        Class.forName(DataTypeEnum
-                                .fromCqlTypeName(currentRow.getColumnDefinitions().getType(name)
-                                        .getTypeArguments().get(0).getName())
-                                .asJavaClass().getCanonicalName())));
-            } catch (ClassNotFoundException e) {
-                logger.warn("Error while executing getList()", e);
-            }
-        }
-        return currentRow.getList(name, String.class);
+        return getList(findColumn(name));
     }
 
-    @SuppressWarnings("cast")
     public long getLong(int index) throws SQLException {
         checkIndex(index);
         try {
-            if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                    .equals("int")) {
-                return (long) currentRow.getInt(index - 1);
-            } else if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                    .equals("varint")) {
-                BigInteger bi = currentRow.getVarint(index - 1);
-                return (bi == null) ? null : bi.longValue();
-            } else {
-                return currentRow.getLong(index - 1);
-            }
+            return accessor(index).getLong(currentRow, index - 1);
         } catch (InvalidTypeException e) {
             throw new SQLNonTransientException(e);
         }
-
     }
 
-    @SuppressWarnings("cast")
     public long getLong(String name) throws SQLException {
-        checkName(name);
-        try {
-            if (currentRow.getColumnDefinitions().getType(name).getName().toString()
-                    .equals("int")) {
-                return (long) currentRow.getInt(name);
-            } else if (currentRow.getColumnDefinitions().getType(name).getName().toString()
-                    .equals("varint")) {
-                BigInteger bi = currentRow.getVarint(name);
-                return (bi == null) ? null : bi.longValue();
-            } else {
-                return currentRow.getLong(name);
-            }
-        } catch (InvalidTypeException e) {
-            throw new SQLNonTransientException(e);
-        }
+        return getLong(findColumn(name));
     }
 
     public Map<?, ?> getMap(int index) throws SQLException {
-        checkIndex(index);
-        return currentRow.getMap(index - 1, String.class, String.class); // TODO: replace with a
-                                                                         // real type check
+        return (Map<?, ?>) getCollection(index, DataType.Name.MAP);
     }
 
     public Map<?, ?> getMap(String name) throws SQLException {
-        checkName(name);
-
-        return currentRow.getMap(name, String.class, String.class); // TODO: replace with a real
-                                                                    // type check
+        return getMap(findColumn(name));
     }
 
     public ResultSetMetaData getMetaData() throws SQLException {
         return meta;
     }
 
-    @SuppressWarnings({ "cast", "boxing" })
     public Object getObject(int index) throws SQLException {
         checkIndex(index);
-        List<DataType> datatypes = null;
-
-        if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                .equals("udt")) {
-            return currentRow.getUDTValue(index - 1);
-        }
-
-        if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                .equals("tuple")) {
-            return currentRow.getTupleValue(index - 1);
-        }
-
-        if (currentRow.getColumnDefinitions().getType(index - 1).isCollection()) {
-            datatypes = currentRow.getColumnDefinitions().getType(index - 1).getTypeArguments();
-            if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                    .equals("set")) {
-                if (datatypes.get(0).getName().toString().equals("udt")) {
-                    return Sets.newLinkedHashSet(currentRow.getSet(index - 1,
-                            TypesMap.getTypeForComparator("udt").getType()));
-                } else if (datatypes.get(0).getName().toString().equals("tuple")) {
-                    if (datatypes.get(0).getName().toString().equals("udt")) {
-                        return Lists.newArrayList(currentRow.getList(index - 1,
-                                TypesMap.getTypeForComparator("udt").getType()));
-                    } else if (datatypes.get(0).getName().toString().equals("tuple")) {
-                        return Lists.newArrayList(currentRow.getList(index - 1,
-                                TypesMap.getTypeForComparator("tuple").getType()));
-                    } else {
-                        return Lists.newArrayList(currentRow.getList(index - 1, TypesMap
-                                .getTypeForComparator(datatypes.get(0).toString()).getType()));
-                    }
-
-                } else {
-                    return Sets.newLinkedHashSet(currentRow.getSet(index - 1,
-                            TypesMap.getTypeForComparator(datatypes.get(0).toString()).getType()));
-                }
-
-            }
-            if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                    .equals("list")) {
-                return Lists.newArrayList(currentRow.getList(index - 1,
-                        TypesMap.getTypeForComparator(datatypes.get(0).toString()).getType()));
-            }
-            if (currentRow.getColumnDefinitions().getType(index - 1).getName().toString()
-                    .equals("map")) {
-
-                Class<?> keyType = TypesMap.getTypeForComparator(datatypes.get(0).toString())
-                        .getType();
-                if (datatypes.get(0).getName().toString().equals("udt")) {
-                    keyType = TypesMap.getTypeForComparator("udt").getType();
-                } else if (datatypes.get(0).getName().toString().equals("tuple")) {
-                    keyType = TypesMap.getTypeForComparator("tuple").getType();
-
-                }
-
-                Class<?> valueType = TypesMap.getTypeForComparator(datatypes.get(1).toString())
-                        .getType();
-                if (datatypes.get(1).getName().toString().equals("udt")) {
-                    valueType = TypesMap.getTypeForComparator("udt").getType();
-                } else if (datatypes.get(1).getName().toString().equals("tuple")) {
-                    valueType = TypesMap.getTypeForComparator("tuple").getType();
-
-                }
-
-                return Maps.newHashMap(currentRow.getMap(index - 1, keyType, valueType));
-            }
-
-        } else {
-            String typeName = currentRow.getColumnDefinitions().getType(index - 1).getName()
-                    .toString();
-            if (typeName.equals("varchar")) {
-                return currentRow.getString(index - 1);
-            } else if (typeName.equals("ascii")) {
-                return currentRow.getString(index - 1);
-            } else if (typeName.equals("integer")) {
-                return currentRow.getInt(index - 1);
-            } else if (typeName.equals("bigint")) {
-                return currentRow.getLong(index - 1);
-            } else if (typeName.equals("blob")) {
-                return currentRow.getBytes(index - 1);
-            } else if (typeName.equals("boolean")) {
-                return currentRow.getBool(index - 1);
-            } else if (typeName.equals("counter")) {
-                return currentRow.getLong(index - 1);
-            } else if (typeName.equals("date")) {
-                return currentRow.getDate(index - 1);
-            } else if (typeName.equals("decimal")) {
-                return currentRow.getDecimal(index - 1);
-            } else if (typeName.equals("double")) {
-                return currentRow.getDouble(index - 1);
-            } else if (typeName.equals("float")) {
-                return currentRow.getFloat(index - 1);
-            } else if (typeName.equals("inet")) {
-                return currentRow.getInet(index - 1);
-            } else if (typeName.equals("int")) {
-                return currentRow.getInt(index - 1);
-            } else if (typeName.equals("smallint")) {
-                return currentRow.getShort(index - 1);
-            } else if (typeName.equals("text")) {
-                return currentRow.getString(index - 1);
-            } else if (typeName.equals("time")) {
-                if (currentRow.isNull(index - 1)) {
-                    return null;
-                }
-                return new Time(currentRow.getTime(index - 1) / 1_000_000L);
-            } else if (typeName.equals("timestamp")) {
-                if (currentRow.isNull(index - 1)) {
-                    return null;
-                }
-                return new Timestamp((currentRow.getTimestamp(index - 1)).getTime());
-            } else if (typeName.equals("timeuuid")) {
-                return currentRow.getUUID(index - 1);
-            } else if (typeName.equals("tinyint")) {
-                return currentRow.getByte(index - 1);
-            } else if (typeName.equals("uuid")) {
-                return currentRow.getUUID(index - 1);
-            } else if (typeName.equals("varint")) {
-                return currentRow.getVarint(index - 1);
-            }
-        }
-
-        return null;
+        return accessor(index).getObject(currentRow, index - 1);
     }
 
-    @SuppressWarnings({ "cast", "boxing" })
     public Object getObject(String name) throws SQLException {
-        checkName(name);
-        List<DataType> datatypes = null;
-
-        if (currentRow.getColumnDefinitions().getType(name).getName().toString().equals("udt")) {
-            return currentRow.getUDTValue(name);
-        }
-
-        if (currentRow.getColumnDefinitions().getType(name).getName().toString().equals("tuple")) {
-            return currentRow.getTupleValue(name);
-        }
-
-        if (currentRow.getColumnDefinitions().getType(name).isCollection()) {
-            datatypes = currentRow.getColumnDefinitions().getType(name).getTypeArguments();
-            if (currentRow.getColumnDefinitions().getType(name).getName().toString()
-                    .equals("set")) {
-                if (datatypes.get(0).getName().toString().equals("udt")) {
-                    return Sets.newLinkedHashSet(currentRow.getSet(name,
-                            TypesMap.getTypeForComparator("udt").getType()));
-                } else if (datatypes.get(0).getName().toString().equals("tuple")) {
-                    return Sets.newLinkedHashSet(currentRow.getSet(name,
-                            TypesMap.getTypeForComparator("tuple").getType()));
-                } else {
-                    return Sets.newLinkedHashSet(currentRow.getSet(name,
-                            TypesMap.getTypeForComparator(datatypes.get(0).toString()).getType()));
-                }
-            }
-            if (currentRow.getColumnDefinitions().getType(name).getName().toString()
-                    .equals("list")) {
-                if (datatypes.get(0).getName().toString().equals("udt")) {
-                    return Lists.newArrayList(currentRow.getList(name,
-                            TypesMap.getTypeForComparator("udt").getType()));
-                } else if (datatypes.get(0).getName().toString().equals("tuple")) {
-                    return Lists.newArrayList(currentRow.getList(name,
-                            TypesMap.getTypeForComparator("tuple").getType()));
-                } else {
-                    return Lists.newArrayList(currentRow.getList(name,
-                            TypesMap.getTypeForComparator(datatypes.get(0).toString()).getType()));
-                }
-            }
-            if (currentRow.getColumnDefinitions().getType(name).getName().toString()
-                    .equals("map")) {
-                Class<?> keyType = TypesMap.getTypeForComparator(datatypes.get(0).toString())
-                        .getType();
-                if (datatypes.get(0).getName().toString().equals("udt")) {
-                    keyType = TypesMap.getTypeForComparator("udt").getType();
-                } else if (datatypes.get(0).getName().toString().equals("tuple")) {
-                    keyType = TypesMap.getTypeForComparator("tuple").getType();
-
-                }
-
-                Class<?> valueType = TypesMap.getTypeForComparator(datatypes.get(1).toString())
-                        .getType();
-                if (datatypes.get(1).getName().toString().equals("udt")) {
-                    valueType = TypesMap.getTypeForComparator("udt").getType();
-                } else if (datatypes.get(1).getName().toString().equals("tuple")) {
-                    valueType = TypesMap.getTypeForComparator("tuple").getType();
-                }
-
-                return Maps.newHashMap(currentRow.getMap(name, keyType, valueType));
-            }
-        } else {
-            String typeName = currentRow.getColumnDefinitions().getType(name).getName().toString();
-
-            if (typeName.equals("varchar")) {
-                return currentRow.getString(name);
-            } else if (typeName.equals("ascii")) {
-                return currentRow.getString(name);
-            } else if (typeName.equals("integer")) {
-                return currentRow.getInt(name);
-            } else if (typeName.equals("bigint")) {
-                return currentRow.getLong(name);
-            } else if (typeName.equals("blob")) {
-                return currentRow.getBytes(name);
-            } else if (typeName.equals("boolean")) {
-                return currentRow.getBool(name);
-            } else if (typeName.equals("counter")) {
-                return currentRow.getLong(name);
-            } else if (typeName.equals("date")) {
-                return currentRow.getDate(name);
-            } else if (typeName.equals("decimal")) {
-                return currentRow.getDecimal(name);
-            } else if (typeName.equals("double")) {
-                return currentRow.getDouble(name);
-            } else if (typeName.equals("duration")) {
-                // FIXME
-                return null;
-            } else if (typeName.equals("float")) {
-                return currentRow.getFloat(name);
-            } else if (typeName.equals("inet")) {
-                return currentRow.getInet(name);
-            } else if (typeName.equals("int")) {
-                return currentRow.getInt(name);
-            } else if (typeName.equals("smallint")) {
-                return currentRow.getShort(name);
-            } else if (typeName.equals("text")) {
-                return currentRow.getString(name);
-            } else if (typeName.equals("time")) {
-                if (currentRow.isNull(name)) {
-                    return null;
-                }
-                return new Time(currentRow.getTime(name) / 1_000_000L);
-            } else if (typeName.equals("timestamp")) {
-                if (currentRow.isNull(name)) {
-                    return null;
-                }
-                return new Timestamp((currentRow.getTimestamp(name)).getTime());
-            } else if (typeName.equals("timeuuid")) {
-                return currentRow.getUUID(name);
-            } else if (typeName.equals("tinyint")) {
-                return currentRow.getByte(name);
-            } else if (typeName.equals("uuid")) {
-                return currentRow.getUUID(name);
-            } else if (typeName.equals("varint")) {
-                return currentRow.getVarint(name);
-            }
-
-        }
-
-        return null;
+        return getObject(findColumn(name));
     }
 
     public int getRow() throws SQLException {
@@ -876,31 +930,23 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public Set<?> getSet(int index) throws SQLException {
+        return (Set<?>) getCollection(index, DataType.Name.SET);
+    }
+
+    /**
+     * @return the value of a collection column of the given type, as returned by its accessor
+     */
+    private Object getCollection(int index, DataType.Name type) throws SQLException {
         checkIndex(index);
-        try {
-            return currentRow.getSet(index - 1,
-                    Class.forName(DataTypeEnum
-                            .fromCqlTypeName(currentRow.getColumnDefinitions().getType(index - 1)
-                                    .getTypeArguments().get(0).getName())
-                            .asJavaClass().getCanonicalName()));
-        } catch (ClassNotFoundException e) {
-            logger.warn("Error while performing getSet()", e);
-        }
-        return null;
+        ColumnAccessor accessor = accessor(index);
+        if (accessor.type.getName() != type)
+            throw new SQLNonTransientException(
+                    "column " + index + " is a " + accessor.type + ", not a " + type);
+        return accessor.getObject(currentRow, index - 1);
     }
 
     public Set<?> getSet(String name) throws SQLException {
-        checkName(name);
-        try {
-            return currentRow.getSet(name,
-                    Class.forName(DataTypeEnum
-                            .fromCqlTypeName(currentRow.getColumnDefinitions().getType(name)
-                                    .getTypeArguments().get(0).getName())
-                            .asJavaClass().getCanonicalName()));
-        } catch (ClassNotFoundException e) {
-            logger.warn("Error while performing getSet()", e);
-        }
-        return null;
+        return getSet(findColumn(name));
     }
 
     public short getShort(int index) throws SQLException {
@@ -909,8 +955,7 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public short getShort(String name) throws SQLException {
-        checkName(name);
-        return currentRow.getShort(name);
+        return getShort(findColumn(name));
     }
 
     public Statement getStatement() throws SQLException {
@@ -920,30 +965,11 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
 
     public String getString(int index) throws SQLException {
         checkIndex(index);
-        try {
-            if (currentRow.getColumnDefinitions().getType(index - 1).isCollection()) {
-                Object object = getObject(index);
-                return (object == null) ? null : String.valueOf(object);
-            }
-            return currentRow.getString(index - 1);
-        } catch (Exception e) {
-            Object object = getObject(index);
-            return (object == null) ? null : String.valueOf(object);
-        }
+        return accessor(index).getString(currentRow, index - 1);
     }
 
     public String getString(String name) throws SQLException {
-        checkName(name);
-        try {
-            if (currentRow.getColumnDefinitions().getType(name).isCollection()) {
-                Object object = getObject(name);
-                return (object == null) ? null : String.valueOf(object);
-            }
-            return currentRow.getString(name);
-        } catch (Exception e) {
-            Object object = getObject(name);
-            return (object == null) ? null : String.valueOf(object);
-        }
+        return getString(findColumn(name));
     }
 
     public Time getTime(int index) throws SQLException {
@@ -962,18 +988,12 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public Time getTime(String name) throws SQLException {
-        checkName(name);
-        // we have to check this since getTime returns a long
-        if (currentRow.isNull(name)) {
-            return null;
-        }
-        return new Time(currentRow.getTime(name) / 1_000_000L);
+        return getTime(findColumn(name));
     }
 
     public Time getTime(String name, Calendar calendar) throws SQLException {
-        checkName(name);
         // silently ignore the Calendar argument; its a hint we do not need
-        return getTime(name);
+        return getTime(findColumn(name));
     }
 
     public Timestamp getTimestamp(int index) throws SQLException {
@@ -989,15 +1009,11 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public Timestamp getTimestamp(String name) throws SQLException {
-        checkName(name);
-        java.util.Date date = currentRow.getTimestamp(name);
-        return (date == null) ? null : new Timestamp(date.getTime());
+        return getTimestamp(findColumn(name));
     }
 
     public Timestamp getTimestamp(String name, Calendar calendar) throws SQLException {
-        checkName(name);
-        calendar.setTime(currentRow.getTimestamp(name));
-        return new Timestamp(calendar.toInstant().toEpochMilli());
+        return getTimestamp(findColumn(name), calendar);
     }
 
     public int getType() throws SQLException {
@@ -1048,7 +1064,9 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
 
     public boolean isLast() throws SQLException {
         checkNotClosed();
-        return !rowsIterator.hasNext();
+        if (rowStore != null)
+            return rowNumber >= 1 && rowNumber == rowStore.size() && !advance();
+        return !advance();
     }
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
@@ -1059,10 +1077,18 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     // Need to use a list iterator so next() needs completely re-thought
 
     public boolean last() throws SQLException {
-        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+        checkNotClosed();
+        checkScrollable();
+        return scrollTo(readAll());
     }
 
-    public synchronized boolean next() throws SQLException {
+    public boolean next() throws SQLException {
+        if (rowHeld) {
+            rowHeld = false;
+            return true;
+        }
+        if (rowStore != null)
+            return rowNumber != Integer.MAX_VALUE && scrollTo(rowNumber + 1);
         if (hasMoreRows()) {
             // populateColumns is called upon init to set up the metadata fields; so skip first call
             if (rowNumber != 0)
@@ -1075,11 +1101,15 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     }
 
     public boolean previous() throws SQLException {
-        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+        checkNotClosed();
+        checkScrollable();
+        return scrollTo(position() - 1);
     }
 
-    public boolean relative(int arg0) throws SQLException {
-        throw new SQLFeatureNotSupportedException(NOT_SUPPORTED);
+    public boolean relative(int rows) throws SQLException {
+        checkNotClosed();
+        checkScrollable();
+        return scrollTo(position() + rows);
     }
 
     @SuppressWarnings("boxing")
@@ -1122,26 +1152,26 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
      */
     class CResultSetMetaData implements ResultSetMetaData {
         public DataType getDataType(int column) throws SQLException {
-            checkIndex(column);
-            DataType type = null;
-            if (currentRow != null) {
-                type = currentRow.getColumnDefinitions().getType(column - 1);
-            } else {
-                type = driverResultSet.getColumnDefinitions().getType(column - 1);
-            }
-
-            return type;
+            return checkColumn(column).definitions.getType(column - 1);
         }
 
         Definition getDefinition(int column) throws SQLException {
-            checkIndex(column);
-            Definition col = null;
-            if (currentRow != null) {
-                col = currentRow.getColumnDefinitions().asList().get(column - 1);
-            } else {
-                col = driverResultSet.getColumnDefinitions().asList().get(column - 1);
-            }
-            return col;
+            return checkColumn(column).definitions.asList().get(column - 1);
+        }
+
+        /**
+         * Checks the index against the columns of the result, whether there is a current row or
+         * not.
+         *
+         * @return the columns of the result
+         */
+        private ResultColumns checkColumn(int column) throws SQLException {
+            ResultColumns columns = columns();
+            int count = columns == null ? 0 : columns.definitions.size();
+            if (column < 1 || column > count)
+                throw new SQLSyntaxErrorException(
+                        String.format(MUST_BE_POSITIVE, String.valueOf(column)) + " " + count);
+            return columns;
         }
 
         /**
@@ -1152,23 +1182,14 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
         }
 
         public String getColumnClassName(int column) throws SQLException {
-            if (currentRow != null) {
-                return DataTypeEnum
-                        .fromCqlTypeName(
-                                currentRow.getColumnDefinitions().getType(column - 1).getName())
-                        .asJavaClass().getCanonicalName();
-            }
-            return DataTypeEnum.fromCqlTypeName(driverResultSet.getColumnDefinitions().asList()
-                    .get(column - 1).getType().getName()).asJavaClass().getCanonicalName();
-
+            return DataTypeEnum
+                    .fromCqlTypeName(columns().definitions.getType(column - 1).getName())
+                    .asJavaClass().getCanonicalName();
         }
 
         public int getColumnCount() throws SQLException {
             try {
-                if (currentRow != null) {
-                    return currentRow.getColumnDefinitions().size();
-                }
-                return driverResultSet.getColumnDefinitions().size();
+                return columns().definitions.size();
             } catch (Exception e) {
                 return 0;
             }
@@ -1201,10 +1222,7 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
         }
 
         public String getColumnName(int column) throws SQLException {
-            if (currentRow != null) {
-                return currentRow.getColumnDefinitions().getName(column - 1);
-            }
-            return driverResultSet.getColumnDefinitions().asList().get(column - 1).getName();
+            return columns().definitions.getName(column - 1);
         }
 
         public int getColumnType(int column) throws SQLException {
@@ -1311,13 +1329,7 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
 
         @Override
         public String getTableName(int column) throws SQLException {
-            String tableName = "";
-            if (currentRow != null) {
-                tableName = currentRow.getColumnDefinitions().getTable(column - 1);
-            } else {
-                tableName = driverResultSet.getColumnDefinitions().getTable(column - 1);
-            }
-            return tableName;
+            return columns().definitions.getTable(column - 1);
         }
 
     }
@@ -1337,50 +1349,25 @@ class CassandraResultSet extends AbstractResultSet implements CassandraResultSet
     @Override
     public InputStream getBinaryStream(int columnIndex) throws SQLException {
         checkIndex(columnIndex);
-        byte[] bytes = new byte[currentRow.getBytes(columnIndex - 1).remaining()];
-        currentRow.getBytes(columnIndex - 1).get(bytes, 0, bytes.length);
-
-        return new ByteArrayInputStream(bytes);
+        ByteBuffer bytes = currentRow.getBytes(columnIndex - 1);
+        return (bytes == null) ? null : ByteBufferBlob.inputStream(bytes);
     }
 
     @Override
     public InputStream getBinaryStream(String columnLabel) throws SQLException {
-        // TODO Auto-generated method stub
-        checkName(columnLabel);
-        byte[] bytes = new byte[currentRow.getBytes(columnLabel).remaining()];
-        currentRow.getBytes(columnLabel).get(bytes, 0, bytes.length);
-
-        return new ByteArrayInputStream(bytes);
-    }
-
-    @SuppressWarnings("unused")
-    private boolean hasNextIterator() {
-        return currentIteratorIndex < rowsIterators.size() - 1;
-    }
-
-    @SuppressWarnings("unused")
-    private boolean nextIterator() {
-        try {
-            currentIteratorIndex++;
-            rowsIterator = rowsIterators.get(currentIteratorIndex);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return getBinaryStream(findColumn(columnLabel));
     }
 
     @Override
     public Blob getBlob(int index) throws SQLException {
         checkIndex(index);
-
-        return new javax.sql.rowset.serial.SerialBlob(currentRow.getBytes(index - 1).array());
+        ByteBuffer bytes = currentRow.getBytes(index - 1);
+        return (bytes == null) ? null : new ByteBufferBlob(bytes);
     }
 
     @Override
     public Blob getBlob(String columnName) throws SQLException {
-        checkName(columnName);
-
-        return new javax.sql.rowset.serial.SerialBlob(currentRow.getBytes(columnName).array());
+        return getBlob(findColumn(columnName));
     }
 
 }
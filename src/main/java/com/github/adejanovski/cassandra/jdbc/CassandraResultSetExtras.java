@@ -15,6 +15,7 @@
 package com.github.adejanovski.cassandra.jdbc;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
@@ -44,4 +45,49 @@ public interface CassandraResultSetExtras extends ResultSet {
 
     public Map<?, ?> getMap(String name) throws SQLException;
 
+    /**
+     * @return the value of a blob column as a read only view of the buffer of the driver, from its
+     *         position to its limit, without copying it; null if the value is null
+     */
+    public ByteBuffer getByteBuffer(int index) throws SQLException;
+
+    public ByteBuffer getByteBuffer(String name) throws SQLException;
+
+    /**
+     * @return the count of pages fetched in the background that were there before the rows of the
+     *         previous page ran out
+     */
+    public long getPrefetchHits();
+
+    /**
+     * @return the count of times the rows ran out before the next page was there, next() then
+     *         waiting for it
+     */
+    public long getPrefetchStalls();
+
+
+    /**
+     * The position after the page of the last row read, as an opaque token that can be kept by clients
+     * between requests, to resume the query from there with
+     * {@link CassandraStatementExtras#setPagingState(String)}.
+     * <p>
+     * Rows are fetched a page at a time, so the rows of the current page not read yet are not
+     * returned when resuming: read the rows of the page first, that is as many rows as the fetch
+     * size. Pages already fetched ahead of the reads are returned when resuming.
+     *
+     * @return the paging state, null if all the rows were fetched
+     */
+    public String getPagingState();
+
+    /**
+     * Moves the cursor forward over up to {@link ColumnarBatch#capacity()} rows, storing their
+     * values by column in the given batch, without the objects of the getters for each value.
+     * The cursor is left on the last row of the batch.
+     * <p>
+     * A batch only holds rows of the same columns: in the result set of several statements, it
+     * ends before the first row of a statement with other columns.
+     *
+     * @return the count of rows of the batch, 0 once all the rows were read
+     */
+    public int nextBatch(ColumnarBatch batch) throws SQLException;
 }
@@ -19,10 +19,12 @@ import static com.github.adejanovski.cassandra.jdbc.Utils.BAD_FETCH_DIR;
 import static com.github.adejanovski.cassandra.jdbc.Utils.BAD_FETCH_SIZE;
 import static com.github.adejanovski.cassandra.jdbc.Utils.BAD_HOLD_RSET;
 import static com.github.adejanovski.cassandra.jdbc.Utils.BAD_KEEP_RSET;
+import static com.github.adejanovski.cassandra.jdbc.Utils.BAD_PAGING_STATE;
 import static com.github.adejanovski.cassandra.jdbc.Utils.BAD_TYPE_RSET;
 import static com.github.adejanovski.cassandra.jdbc.Utils.NO_GEN_KEYS;
 import static com.github.adejanovski.cassandra.jdbc.Utils.NO_INTERFACE;
 import static com.github.adejanovski.cassandra.jdbc.Utils.NO_MULTIPLE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.NO_MULTIPLE_PAGING_STATE;
 import static com.github.adejanovski.cassandra.jdbc.Utils.NO_RESULTSET;
 import static com.github.adejanovski.cassandra.jdbc.Utils.WAS_CLOSED_STMT;
 
@@ -38,15 +40,19 @@ import java.sql.SQLTransientException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Configuration;
 import com.datastax.driver.core.ConsistencyLevel;
-import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.exceptions.PagingStateException;
 import com.google.common.collect.Lists;
 
 /**
@@ -55,7 +61,17 @@ import com.google.common.collect.Lists;
 
 public class CassandraStatement extends AbstractStatement
         implements CassandraStatementExtras, Comparable<Object>, Statement {
+    /**
+     * @deprecated statements are no longer capped: they run with at most maxInFlight of them in
+     *             flight, see the maxInFlight option of the JDBC url
+     */
+    @Deprecated
     public static final int MAX_ASYNC_QUERIES = 1000;
+    /**
+     * @deprecated statements are split by a CQL lexer, which skips the semicolons of
+     *             literals and comments
+     */
+    @Deprecated
     public static final String semiColonRegex = ";";
     private static final Logger logger = LoggerFactory.getLogger(CassandraStatement.class);
     /**
@@ -85,6 +101,11 @@ public class CassandraStatement extends AbstractStatement
 
     protected ResultSet currentResultSet = null;
 
+    /**
+     * Results of the statements of a multi-statement query not yet reached by getMoreResults().
+     */
+    protected Iterator<com.datastax.driver.core.ResultSet> moreResults = null;
+
     protected int updateCount = -1;
 
     protected boolean escapeProcessing = true;
@@ -93,6 +114,11 @@ public class CassandraStatement extends AbstractStatement
 
     protected com.datastax.driver.core.ConsistencyLevel consistencyLevel;
 
+    /**
+     * The position the next execution resumes from, see {@link #setPagingState(String)}.
+     */
+    protected PagingState pagingState;
+
     CassandraStatement(CassandraConnection con) throws SQLException {
         this(con, null, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY,
                 ResultSet.HOLD_CURSORS_OVER_COMMIT);
@@ -160,84 +186,102 @@ public class CassandraStatement extends AbstractStatement
         cql = null;
     }
 
-    private void doExecute(String cql) throws SQLException {
+    /**
+     * Executes the given CQL, which may contain several statements separated by semicolons.
+     *
+     * @param cql the CQL to execute
+     * @param merge whether the rows of several statements should be merged in a single result set
+     *            streamed as the statements complete; otherwise every statement is awaited, so
+     *            that failures are reported here, and each result is then reached through
+     *            {@link #getMoreResults()}
+     */
+    private void doExecute(String cql, boolean merge) throws SQLException {
 
-        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+        resetResults();
+        PagingState resumeFrom = pagingState;
+        pagingState = null;
+        StatementPipeline pipeline = null;
         try {
-            String[] cqlQueries = cql.split(semiColonRegex);
-            if (cqlQueries.length > 1 && !(cql.trim().toLowerCase().startsWith("begin")
-                    && cql.toLowerCase().contains("batch")
-                    && cql.toLowerCase().contains("apply"))) {
-                // several statements in the query to execute asynchronously
-
-                ArrayList<com.datastax.driver.core.ResultSet> results = Lists.newArrayList();
-                if (cqlQueries.length > MAX_ASYNC_QUERIES * 1.1) {
-                    // Protect the cluster from receiving too many queries at once and force the dev
-                    // to split the load
-                    throw new SQLNonTransientException(
-                            "Too many queries at once (" + cqlQueries.length
-                                    + "). You must split your queries into more batches !");
-                }
-                StringBuilder prevCqlQuery = new StringBuilder();
-                for (String cqlQuery : cqlQueries) {
-                    if ((cqlQuery.contains("'")
-                            && ((StringUtils.countMatches(cqlQuery, "'") % 2 == 1
-                                    && prevCqlQuery.length() == 0)
-                                    || (StringUtils.countMatches(cqlQuery, "'") % 2 == 0
-                                            && prevCqlQuery.length() > 0)))
-                            || (prevCqlQuery.toString().length() > 0 && !cqlQuery.contains("'"))) {
-                        prevCqlQuery.append(cqlQuery + ";");
-                    } else {
-                        prevCqlQuery.append(cqlQuery);
-                        if (logger.isTraceEnabled() || this.connection.debugMode)
-                            logger.debug("CQL:: " + prevCqlQuery.toString());
-                        SimpleStatement stmt = new SimpleStatement(prevCqlQuery.toString());
-                        stmt.setConsistencyLevel(this.connection.defaultConsistencyLevel);
-                        stmt.setFetchSize(this.fetchSize);
-                        ResultSetFuture resultSetFuture = this.connection.getSession()
-                                .executeAsync(stmt);
-                        futures.add(resultSetFuture);
-                        prevCqlQuery = new StringBuilder();
-                    }
+            final CqlLexer.Statements cqlQueries = CqlLexer.split(cql);
+            if (cqlQueries.size() > 1 && resumeFrom != null)
+                throw new SQLFeatureNotSupportedException(NO_MULTIPLE_PAGING_STATE);
+            if (cqlQueries.size() > 1) {
+                // several statements in the query to execute asynchronously, a window of them at
+                // a time so that long scripts do not swamp the coordinators
+                pipeline = new StatementPipeline(this.connection.getSession(),
+                        new StatementPipeline.StatementSource() {
+                            @Override
+                            public int size() {
+                                return cqlQueries.size();
+                            }
+
+                            @Override
+                            public com.datastax.driver.core.Statement get(int index) {
+                                String cqlQuery = cqlQueries.get(index);
+                                if (logger.isTraceEnabled() || connection.debugMode)
+                                    logger.debug("CQL:: " + cqlQuery);
+                                return newStatement(cqlQuery, true);
+                            }
+                        }, this.connection.maxInFlight).start();
+
+                if (merge) {
+                    currentResultSet = new CassandraResultSet(this, pipeline);
+                } else {
+                    moreResults = pipeline.await().iterator();
+                    currentResultSet = new CassandraResultSet(this, moreResults.next());
                 }
 
-                // ListenableFuture<List<com.datastax.driver.core.ResultSet>> res =
-                // Futures.allAsList(futures);
-
-                for (ResultSetFuture future : futures) {
-                    com.datastax.driver.core.ResultSet rows = future.getUninterruptibly();
-                    results.add(rows);
-                }
-
-                currentResultSet = new CassandraResultSet(this, results);
-
             } else {
                 // Only one statement to execute so we go synchronous
                 if (logger.isTraceEnabled() || this.connection.debugMode)
                     logger.debug("CQL:: " + cql);
-                SimpleStatement stmt = new SimpleStatement(cql);
-                stmt.setConsistencyLevel(this.connection.defaultConsistencyLevel);
-                stmt.setFetchSize(this.fetchSize);
+                com.datastax.driver.core.Statement stmt = newStatement(cql, true);
+                try {
+                    resume(stmt, resumeFrom);
+                } catch (SQLNonTransientException e) {
+                    if (!(stmt instanceof BoundStatement))
+                        throw e;
+                    // the paging state may be of the simple statement run before the shape of
+                    // the query was prepared
+                    stmt = newStatement(cql, false);
+                    resume(stmt, resumeFrom);
+                }
                 currentResultSet = new CassandraResultSet(this,
                         this.connection.getSession().execute(stmt));
             }
+        } catch (SQLException e) {
+            // statement failures are already collected and reported together by the pipeline
+            if (pipeline != null)
+                pipeline.cancel();
+            throw e;
         } catch (Exception e) {
-
-            for (ResultSetFuture future : futures) {
-                try {
-                    future.cancel(true);
-                } catch (Exception e1) {
-
-                }
-            }
+            if (pipeline != null)
+                pipeline.cancel();
             throw new SQLTransientException(e);
         }
 
     }
 
+    /**
+     * Creates the driver statement for a single CQL statement: a bound statement when the
+     * automatic parameterization is enabled and asked for, and the shape of the statement has
+     * been prepared, a simple statement otherwise.
+     */
+    private com.datastax.driver.core.Statement newStatement(String cql, boolean parameterize) {
+        com.datastax.driver.core.Statement stmt = null;
+        AutoParameterizer autoParameterizer = this.connection.getAutoParameterizer();
+        if (autoParameterizer != null && parameterize)
+            stmt = autoParameterizer.bind(cql);
+        if (stmt == null)
+            stmt = new SimpleStatement(cql);
+        stmt.setConsistencyLevel(this.connection.defaultConsistencyLevel);
+        stmt.setFetchSize(this.fetchSize);
+        return stmt;
+    }
+
     public boolean execute(String query) throws SQLException {
         checkNotClosed();
-        doExecute(query);
+        doExecute(query, false);
         return !(currentResultSet == null);
     }
 
@@ -254,32 +298,42 @@ public class CassandraStatement extends AbstractStatement
     }
 
     public int[] executeBatch() throws SQLException {
-        int[] returnCounts = new int[batchQueries.size()];
-        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+        checkNotClosed();
+        final List<String> queries = batchQueries;
+        // the batch is emptied whatever the outcome of its execution
+        batchQueries = new ArrayList<String>();
         if (logger.isTraceEnabled() || this.connection.debugMode)
-            logger.debug("CQL statements: " + batchQueries.size());
-        for (String q : batchQueries) {
-            if (logger.isTraceEnabled() || this.connection.debugMode)
-                logger.debug("CQL: " + q);
-            SimpleStatement stmt = new SimpleStatement(q);
-            stmt.setConsistencyLevel(this.connection.defaultConsistencyLevel);
-            ResultSetFuture resultSetFuture = this.connection.getSession().executeAsync(stmt);
-            futures.add(resultSetFuture);
-        }
+            logger.debug("CQL statements: " + queries.size());
 
-        int i = 0;
-        for (ResultSetFuture future : futures) {
-            future.getUninterruptibly();
-            returnCounts[i] = 1;
-            i++;
-        }
+        return executeBatch(new StatementPipeline.StatementSource() {
+            @Override
+            public int size() {
+                return queries.size();
+            }
+
+            @Override
+            public com.datastax.driver.core.Statement get(int index) throws Exception {
+                if (logger.isTraceEnabled() || connection.debugMode)
+                    logger.debug("CQL: " + queries.get(index));
+                return newStatement(queries.get(index), true);
+            }
+        }, queries.size(), null);
+    }
 
-        return returnCounts;
+    /**
+     * Executes the statements of a JDBC batch, keeping at most maxInFlight of them in flight.
+     *
+     * @see StatementPipeline#awaitUpdateCounts(int, int[][])
+     */
+    final int[] executeBatch(StatementPipeline.StatementSource statements, int rowCount,
+            int[][] rows) throws SQLException {
+        return new StatementPipeline(connection.getSession(), statements, connection.maxInFlight)
+                .start().awaitUpdateCounts(rowCount, rows);
     }
 
     public ResultSet executeQuery(String query) throws SQLException {
         checkNotClosed();
-        doExecute(query);
+        doExecute(query, true);
         if (currentResultSet == null)
             throw new SQLNonTransientException(NO_RESULTSET);
         return currentResultSet;
@@ -287,7 +341,7 @@ public class CassandraStatement extends AbstractStatement
 
     public int executeUpdate(String query) throws SQLException {
         checkNotClosed();
-        doExecute(query);
+        doExecute(query, false);
         // no updateCount available in Datastax Java Driver
         return 0;
     }
@@ -317,6 +371,44 @@ public class CassandraStatement extends AbstractStatement
         return fetchSize;
     }
 
+    /**
+     * @return the count of rows left in a page below which the result sets of this statement fetch
+     *         the next one in the background
+     */
+    int prefetchThreshold() {
+        return connection.prefetchThreshold;
+    }
+
+    /**
+     * @return a store for the rows of a scrollable result set of this statement
+     */
+    RowStore newRowStore() {
+        Configuration configuration = connection.getSession().getCluster().getConfiguration();
+        return new RowStore(configuration.getProtocolOptions().getProtocolVersion(),
+                configuration.getCodecRegistry(), connection.getClusterMetadata(),
+                connection.spillThreshold);
+    }
+
+    /**
+     * @return how the result sets of this statement return the values of collection columns
+     */
+    ColumnAccessor.CollectionMode collectionMode() {
+        return connection.collectionMode;
+    }
+
+    ProtocolVersion protocolVersion() {
+        return connection.getSession().getCluster().getConfiguration().getProtocolOptions()
+                .getProtocolVersion();
+    }
+
+    /**
+     * @return a tuner of the fetch size of the pages of a result set of this statement, null if
+     *         the fetch size is not tuned
+     */
+    FetchSizeTuner newFetchSizeTuner() {
+        return connection.fetchSizeTuner == null ? null : connection.fetchSizeTuner.copy();
+    }
+
     public int getMaxFieldSize() throws SQLException {
         checkNotClosed();
         return maxFieldSize;
@@ -329,8 +421,12 @@ public class CassandraStatement extends AbstractStatement
 
     public boolean getMoreResults() throws SQLException {
         checkNotClosed();
+        // only multi-statement queries run with execute() have more results, one per statement
+        if (moreResults != null && moreResults.hasNext()) {
+            currentResultSet = new CassandraResultSet(this, moreResults.next());
+            return true;
+        }
         resetResults();
-        // in the current Cassandra implementation there are never MORE results
         return false;
     }
 
@@ -340,8 +436,7 @@ public class CassandraStatement extends AbstractStatement
 
         switch (current) {
             case CLOSE_CURRENT_RESULT:
-                resetResults();
-                break;
+                return getMoreResults();
 
             case CLOSE_ALL_RESULTS:
             case KEEP_CURRENT_RESULT:
@@ -350,8 +445,6 @@ public class CassandraStatement extends AbstractStatement
             default:
                 throw new SQLSyntaxErrorException(String.format(BAD_KEEP_RSET, current));
         }
-        // in the current Cassandra implementation there are never MORE results
-        return false;
     }
 
     public int getQueryTimeout() throws SQLException {
@@ -377,7 +470,7 @@ public class CassandraStatement extends AbstractStatement
 
     public int getResultSetType() throws SQLException {
         checkNotClosed();
-        return ResultSet.TYPE_FORWARD_ONLY;
+        return resultSetType;
     }
 
     public int getUpdateCount() throws SQLException {
@@ -405,6 +498,7 @@ public class CassandraStatement extends AbstractStatement
 
     protected final void resetResults() {
         currentResultSet = null;
+        moreResults = null;
         updateCount = -1;
     }
 
@@ -472,6 +566,36 @@ public class CassandraStatement extends AbstractStatement
         this.statement.setConsistencyLevel(consistencyLevel);
     }
 
+    public int getUnsetParameterCount() {
+        // only prepared statements have variables
+        return 0;
+    }
+
+    public void setPagingState(String pagingState) throws SQLException {
+        checkNotClosed();
+        this.pagingState = Utils.parsePagingState(pagingState);
+    }
+
+    /**
+     * Makes a driver statement start from the given paging state, or from the first row if it is
+     * null.
+     *
+     * @throws SQLException if the paging state is not one of this statement, with these values
+     */
+    final void resume(com.datastax.driver.core.Statement stmt, PagingState from)
+            throws SQLException {
+        if (from == null) {
+            stmt.setPagingStateUnsafe(null);
+            return;
+        }
+        try {
+            stmt.setPagingState(from,
+                    connection.getSession().getCluster().getConfiguration().getCodecRegistry());
+        } catch (PagingStateException e) {
+            throw new SQLNonTransientException(BAD_PAGING_STATE, e);
+        }
+    }
+
     public int compareTo(Object target) {
         if (this.equals(target))
             return 0;
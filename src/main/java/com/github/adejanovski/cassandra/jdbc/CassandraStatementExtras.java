@@ -14,6 +14,7 @@
  */
 package com.github.adejanovski.cassandra.jdbc;
 
+import java.sql.SQLException;
 import java.sql.Statement;
 
 import com.datastax.driver.core.ConsistencyLevel;
@@ -22,4 +23,22 @@ public interface CassandraStatementExtras extends Statement {
     public void setConsistencyLevel(ConsistencyLevel consistencyLevel);
 
     public ConsistencyLevel getConsistencyLevel();
+
+    /**
+     * @return the count of variables left unset (rather than set to null) by the last execution
+     *         of this statement, summed over the statements of a batch
+     */
+    public int getUnsetParameterCount();
+
+    /**
+     * Makes the next execution of this statement resume from a position given by
+     * {@link CassandraResultSetExtras#getPagingState()} on a result set of the same query, with the
+     * same values. Only applies to the next execution, which throws a
+     * {@link java.sql.SQLFeatureNotSupportedException} for a query of several statements.
+     *
+     * @param pagingState the paging state, null to start from the first row
+     * @throws SQLException a {@link java.sql.SQLNonTransientException} if the paging state is not
+     *             valid
+     */
+    public void setPagingState(String pagingState) throws SQLException;
 }
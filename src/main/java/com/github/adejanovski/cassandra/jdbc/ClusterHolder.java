@@ -0,0 +1,321 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static com.github.adejanovski.cassandra.jdbc.Utils.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.KeyStore;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ProtocolOptions.Compression;
+import com.datastax.driver.core.RemoteEndpointAwareJdkSSLOptions;
+import com.datastax.driver.core.SSLOptions;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.AuthenticationException;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.policies.RoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.github.adejanovski.cassandra.jdbc.codec.BigDecimalToBigintCodec;
+import com.github.adejanovski.cassandra.jdbc.codec.DoubleToDecimalCodec;
+import com.github.adejanovski.cassandra.jdbc.codec.DoubleToFloatCodec;
+import com.github.adejanovski.cassandra.jdbc.codec.IntToLongCodec;
+import com.github.adejanovski.cassandra.jdbc.codec.ListCustomTypeCodec;
+import com.github.adejanovski.cassandra.jdbc.codec.LongToIntCodec;
+import com.github.adejanovski.cassandra.jdbc.codec.TimestampToLongCodec;
+import com.github.adejanovski.cassandra.jdbc.codec.UdtTypeCodec;
+
+/**
+ * Holds a {@link Cluster} shared by the {@link SessionHolder}s of all the connections to the same
+ * cluster with the same settings, whatever their keyspace, so that they share its event loop,
+ * control connection and metadata.
+ * <p>
+ * Clusters are told apart by the properties used to build them only, and are reference counted
+ * like sessions: a cluster is closed when the last of its sessions is.
+ */
+final class ClusterHolder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterHolder.class);
+
+    // the properties a cluster is built from, which tell clusters apart
+    private static final String[] CLUSTER_PROPERTIES = { TAG_SERVER_NAME, TAG_PORT_NUMBER,
+            TAG_USER, TAG_PASSWORD, TAG_LOADBALANCING_POLICY, TAG_RETRY_POLICY,
+            TAG_RECONNECT_POLICY, TAG_DEBUG, TAG_SSL_ENABLED,
+            TAG_VERIFY_SERVER_CERTIFICATE.toLowerCase(), KEY_STORE_URL, KEY_STORE_PASSWORD,
+            KEY_STORE_FACTORY, TRUST_STORE_URL, KEY_ALIAS, PRIVATE_KEY_PASSPHRASE,
+            TAG_COMPRESSION, TAG_CORE_CONNECTIONS_PER_HOST, TAG_MAX_CONNECTIONS_PER_HOST,
+            TAG_MAX_REQUESTS_PER_CONNECTION, TAG_REMOTE_CORE_CONNECTIONS_PER_HOST,
+            TAG_REMOTE_MAX_CONNECTIONS_PER_HOST, TAG_REMOTE_MAX_REQUESTS_PER_CONNECTION,
+            TAG_HEARTBEAT_INTERVAL, TAG_POOL_TIMEOUT, TAG_MAX_QUEUE_SIZE, TAG_CONNECT_TIMEOUT,
+            TAG_READ_TIMEOUT, TAG_KEEP_ALIVE, TAG_TCP_NO_DELAY, TAG_RECEIVE_BUFFER_SIZE,
+            TAG_SEND_BUFFER_SIZE };
+
+    // guarded by the class
+    private static final Map<Map<String, String>, ClusterHolder> clusters =
+            new HashMap<Map<String, String>, ClusterHolder>();
+
+    private final Map<String, String> key;
+    final Cluster cluster;
+    // bytes exchanged with the cluster, before and after compression
+    final TrafficCounter traffic;
+    // guarded by the class
+    private int references;
+
+    private ClusterHolder(Map<String, String> key, Cluster cluster, TrafficCounter traffic) {
+        this.key = key;
+        this.cluster = cluster;
+        this.traffic = traffic;
+    }
+
+    /**
+     * @return the properties of a connection that tell its cluster apart
+     */
+    static Map<String, String> key(Properties properties) {
+        Map<String, String> key = new HashMap<String, String>();
+        for (String name : CLUSTER_PROPERTIES) {
+            String value = properties.getProperty(name);
+            if (value != null)
+                key.put(name, value);
+        }
+        return key;
+    }
+
+    /**
+     * @return the cluster for the properties of a connection, built if there is none yet; to be
+     *         released once unused
+     */
+    static synchronized ClusterHolder acquire(Properties properties) throws SQLException {
+        Map<String, String> key = key(properties);
+        ClusterHolder holder = clusters.get(key);
+        if (holder == null) {
+            TrafficCounter traffic = new TrafficCounter(parseCompression(properties));
+            holder = new ClusterHolder(key, buildCluster(properties, traffic), traffic);
+            clusters.put(key, holder);
+            logger.debug("Built cluster for {}", properties.getProperty(TAG_SERVER_NAME));
+        }
+        holder.references++;
+        return holder;
+    }
+
+    /**
+     * Indicates that a session stopped using the cluster, closing it if it was the last one.
+     */
+    void release() {
+        synchronized (ClusterHolder.class) {
+            if (--references > 0)
+                return;
+            if (clusters.get(key) == this)
+                clusters.remove(key);
+        }
+        logger.debug("Closing cluster of {}", key.get(TAG_SERVER_NAME));
+        cluster.close();
+    }
+
+    /**
+     * Indicates that a session failed to open on the cluster. The cluster is no longer handed to
+     * new sessions if it failed itself, so that they build a new one; it still is if only the
+     * session failed, for instance because its keyspace does not exist.
+     */
+    void release(DriverException failure) {
+        if (failure instanceof NoHostAvailableException
+                || failure instanceof AuthenticationException || cluster.isClosed()) {
+            synchronized (ClusterHolder.class) {
+                if (clusters.get(key) == this)
+                    clusters.remove(key);
+            }
+        }
+        release();
+    }
+
+    /**
+     * @return a cluster, not initialized yet, built from the properties of a connection
+     */
+    private static Cluster buildCluster(Properties properties, TrafficCounter traffic)
+            throws SQLException {
+        String hosts = properties.getProperty(TAG_SERVER_NAME);
+        int port = Integer.parseInt(properties.getProperty(TAG_PORT_NUMBER));
+        String username = properties.getProperty(TAG_USER, "");
+        String password = properties.getProperty(TAG_PASSWORD, "");
+        String loadBalancingPolicy = properties.getProperty(TAG_LOADBALANCING_POLICY, "");
+        String retryPolicy = properties.getProperty(TAG_RETRY_POLICY, "");
+        String reconnectPolicy = properties.getProperty(TAG_RECONNECT_POLICY, "");
+        boolean debugMode = booleanOption(properties, TAG_DEBUG, false);
+        // SSL Options
+        boolean sslEnabled = booleanOption(properties, TAG_SSL_ENABLED, false);
+        boolean verifyServerCertificate = booleanOption(properties,
+                TAG_VERIFY_SERVER_CERTIFICATE.toLowerCase(), false);
+
+        Cluster.Builder builder = Cluster.builder();
+        builder.addContactPoints(hosts.split("--")).withPort(port);
+        builder.withCompression(traffic.compression).withNettyOptions(traffic);
+        if (sslEnabled && verifyServerCertificate) {
+            String keyStorePassword = properties.getProperty(KEY_STORE_PASSWORD, "");
+            String keyStoreUrl = properties.getProperty(KEY_STORE_URL, "");
+            String keyStoreFactory = properties.getProperty(KEY_STORE_FACTORY, "");
+            String trustStoreUrl = properties.getProperty(TRUST_STORE_URL, "");
+            String privateKeyAlias = properties.getProperty(KEY_ALIAS, "");
+            String privateKeyPassPhrase = properties.getProperty(PRIVATE_KEY_PASSPHRASE, "");
+            KeyStore keyStore = null;
+            KeyStore trustStore = null;
+            //Condition to check for custom Key Store Factory to Generate Key/Trust stores
+            if (!StringUtils.isEmpty(keyStoreFactory)) {
+                try {
+                    Class factory = Class.forName(keyStoreFactory);
+                    Method getKeyStoreMethod = factory.getDeclaredMethod(
+                            "getKeyStore", Properties.class);
+                    keyStore = (KeyStore) getKeyStoreMethod.invoke(null, properties);
+
+                    Method getTrustStoreMethod = factory.getDeclaredMethod(
+                            "getTrustStore", Properties.class);
+                    trustStore = (KeyStore) getTrustStoreMethod.invoke(null, properties);
+                } catch (ClassNotFoundException | NoSuchMethodException |
+                        IllegalAccessException | InvocationTargetException e) {
+                    //ignore this and proceed
+                    logger.warn("Error while creating Key/Trust store ", e);
+                    keyStore = null;
+                    trustStore = null;
+                }
+            }
+            SSLContext context = null;
+            if (keyStore != null && trustStore != null) {
+                context = SSLUtil.getSSLContextFromKeyStore(keyStore, trustStore, privateKeyAlias,
+                        privateKeyPassPhrase);
+            } else {
+                // check keyStoreUrl
+                if (!StringUtils.isEmpty(keyStoreUrl)) {
+                    try {
+                        new URL(keyStoreUrl);
+                    } catch (MalformedURLException e) {
+                        keyStoreUrl = "file:" + keyStoreUrl;
+                    }
+                }
+                context = SSLUtil.getTrustEverybodySSLContext(keyStoreUrl, privateKeyAlias,
+                        privateKeyPassPhrase, keyStorePassword, trustStoreUrl);
+            }
+
+            SSLOptions options = RemoteEndpointAwareJdkSSLOptions.builder().withSSLContext(context)
+                    .build();
+            builder.withSSL(options);
+        }
+        builder.withPoolingOptions(parsePoolingOptions(properties))
+                .withSocketOptions(parseSocketOptions(properties));
+        // Set credentials when applicable
+        if (username.length() > 0) {
+            builder.withCredentials(username, password);
+        }
+
+        if (loadBalancingPolicy.length() > 0) {
+            // if load balancing policy has been given in the JDBC URL, parse it and add it to the
+            // cluster builder
+            try {
+                builder.withLoadBalancingPolicy(parseLbPolicy(loadBalancingPolicy));
+            } catch (Exception e) {
+                if (debugMode) {
+                    throw new SQLNonTransientConnectionException(e);
+                }
+                logger.warn("Error occurred while parsing load balancing policy :" + e.getMessage()
+                        + " / Forcing to TokenAwarePolicy...");
+                builder.withLoadBalancingPolicy(new TokenAwarePolicy(new RoundRobinPolicy()));
+            }
+        }
+
+        if (retryPolicy.length() > 0) {
+            // if retry policy has been given in the JDBC URL, parse it and add it to the cluster
+            // builder
+            try {
+                builder.withRetryPolicy(parseRetryPolicy(retryPolicy));
+            } catch (Exception e) {
+                if (debugMode) {
+                    throw new SQLNonTransientConnectionException(e);
+                }
+                logger.warn("Error occured while parsing retry policy :" + e.getMessage()
+                        + " / skipping...");
+            }
+        }
+
+        if (reconnectPolicy.length() > 0) {
+            // if reconnection policy has been given in the JDBC URL, parse it and add it to the
+            // cluster builder
+            try {
+                builder.withReconnectionPolicy(parseReconnectionPolicy(reconnectPolicy));
+            } catch (Exception e) {
+                if (debugMode) {
+                    throw new SQLNonTransientConnectionException(e);
+                }
+                logger.warn("Error occured while parsing reconnection policy :" + e.getMessage()
+                        + " / skipping...");
+            }
+        }
+
+        // The codecs below were defined in the original code. We probably
+        // don't need all of them, however, a couple are necessary to run the
+        // tests, specifically these:
+        //
+        // NumericTypesUnitTest.testDecimalType [bigint <-> java.lang.Integer]
+        // JdbcRegressionUnitTest.testTimestampToLongCodec [timestamp <-> java.lang.Long]
+
+        // Declare and register codecs
+        List<TypeCodec<?>> codecs = new ArrayList<TypeCodec<?>>();
+        CodecRegistry customizedRegistry = new CodecRegistry();
+
+        codecs.add(new TimestampToLongCodec(Long.class));
+        codecs.add(new LongToIntCodec(Integer.class));
+        codecs.add(new IntToLongCodec(Long.class));
+        codecs.add(new BigDecimalToBigintCodec(BigDecimal.class));
+        codecs.add(new DoubleToDecimalCodec(Double.class));
+        codecs.add(new DoubleToFloatCodec(Double.class));
+        codecs.add(new UdtTypeCodec());
+        codecs.add(TypeCodec.list(new UdtTypeCodec()));
+        codecs.add(new ListCustomTypeCodec());
+
+        customizedRegistry.register(codecs);
+        builder.withCodecRegistry(customizedRegistry);
+        // end of codec register
+
+        return builder.build();
+    }
+
+    private static Compression parseCompression(Properties properties) throws SQLException {
+        String compression = properties.getProperty(TAG_COMPRESSION);
+        if (compression == null)
+            return CassandraConnection.defaultCompression;
+        try {
+            return Compression.valueOf(compression.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new SQLNonTransientConnectionException(
+                    "unknown compression: " + compression + ", expected lz4, snappy or none");
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+
+/**
+ * Reads the values of one column of a {@link CassandraResultSet}.
+ * <p>
+ * The accessors are resolved once per result set from the column definitions, so that reading a
+ * value is a direct call to the getter of the driver {@link Row} matching the CQL type of the
+ * column, instead of a lookup of the type of the column for every value.
+ */
+abstract class ColumnAccessor {
+
+    /**
+     * How the values of collection columns are returned.
+     */
+    enum CollectionMode {
+        /** as the mutable collections decoded by the driver for each call */
+        COPY,
+        /** as unmodifiable views of the collections decoded by the driver */
+        VIEW,
+        /** as read only collections decoded when their elements are first accessed */
+        LAZY
+    }
+
+    final DataType type;
+
+    ColumnAccessor(DataType type) {
+        this.type = type;
+    }
+
+    /**
+     * @return one accessor per column, in the order of the columns
+     */
+    static ColumnAccessor[] of(ColumnDefinitions columns) {
+        return of(columns, CollectionMode.COPY, null);
+    }
+
+    /**
+     * @param protocolVersion the version of the protocol, to read the size of collections in
+     *            {@link CollectionMode#LAZY} mode
+     */
+    static ColumnAccessor[] of(ColumnDefinitions columns, CollectionMode collections,
+            ProtocolVersion protocolVersion) {
+        ColumnAccessor[] accessors = new ColumnAccessor[columns.size()];
+        for (int i = 0; i < accessors.length; i++)
+            accessors[i] = of(columns.getType(i), collections, protocolVersion);
+        return accessors;
+    }
+
+    static ColumnAccessor of(DataType type) {
+        return of(type, CollectionMode.COPY, null);
+    }
+
+    static ColumnAccessor of(DataType type, CollectionMode collections,
+            final ProtocolVersion protocolVersion) {
+        switch (type.getName()) {
+            case ASCII:
+            case TEXT:
+            case VARCHAR:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getString(i);
+                    }
+
+                    @Override
+                    String getString(Row row, int i) {
+                        return row.getString(i);
+                    }
+                };
+            case BIGINT:
+            case COUNTER:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getLong(i);
+                    }
+                };
+            case BLOB:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getBytes(i);
+                    }
+                };
+            case BOOLEAN:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getBool(i);
+                    }
+                };
+            case DATE:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getDate(i);
+                    }
+                };
+            case DECIMAL:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getDecimal(i);
+                    }
+                };
+            case DOUBLE:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getDouble(i);
+                    }
+                };
+            case FLOAT:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getFloat(i);
+                    }
+
+                    @Override
+                    double getDouble(Row row, int i) {
+                        return row.getFloat(i);
+                    }
+                };
+            case INET:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getInet(i);
+                    }
+                };
+            case INT:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getInt(i);
+                    }
+
+                    @Override
+                    long getLong(Row row, int i) {
+                        return row.getInt(i);
+                    }
+                };
+            case SMALLINT:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getShort(i);
+                    }
+                };
+            case TINYINT:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getByte(i);
+                    }
+                };
+            case TIME:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        if (row.isNull(i))
+                            return null;
+                        return new Time(row.getTime(i) / 1_000_000L);
+                    }
+                };
+            case TIMESTAMP:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        if (row.isNull(i))
+                            return null;
+                        return new Timestamp(row.getTimestamp(i).getTime());
+                    }
+                };
+            case UUID:
+            case TIMEUUID:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getUUID(i);
+                    }
+                };
+            case VARINT:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getVarint(i);
+                    }
+
+                    @Override
+                    long getLong(Row row, int i) {
+                        BigInteger value = row.getVarint(i);
+                        return value == null ? 0 : value.longValue();
+                    }
+                };
+            case UDT:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getUDTValue(i);
+                    }
+                };
+            case TUPLE:
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getTupleValue(i);
+                    }
+                };
+            case SET:
+                // the driver decodes a new LinkedHashSet, ArrayList or LinkedHashMap for each
+                // call, so there is no need to copy it
+                final Class<?> setElements = javaClass(type.getTypeArguments().get(0));
+                if (collections == CollectionMode.LAZY)
+                    return new ColumnAccessor(type) {
+                        @Override
+                        Object getObject(Row row, int i) {
+                            return row.isNull(i) ? Collections.emptySet()
+                                    : LazyCollections.set(row, i, setElements, protocolVersion);
+                        }
+                    };
+                if (collections == CollectionMode.VIEW)
+                    return new ColumnAccessor(type) {
+                        @Override
+                        Object getObject(Row row, int i) {
+                            return Collections.unmodifiableSet(row.getSet(i, setElements));
+                        }
+                    };
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getSet(i, setElements);
+                    }
+                };
+            case LIST:
+                final Class<?> listElements = javaClass(type.getTypeArguments().get(0));
+                if (collections == CollectionMode.LAZY)
+                    return new ColumnAccessor(type) {
+                        @Override
+                        Object getObject(Row row, int i) {
+                            return row.isNull(i) ? Collections.emptyList()
+                                    : LazyCollections.list(row, i, listElements, protocolVersion);
+                        }
+                    };
+                if (collections == CollectionMode.VIEW)
+                    return new ColumnAccessor(type) {
+                        @Override
+                        Object getObject(Row row, int i) {
+                            return Collections.unmodifiableList(row.getList(i, listElements));
+                        }
+                    };
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getList(i, listElements);
+                    }
+                };
+            case MAP:
+                final Class<?> keys = javaClass(type.getTypeArguments().get(0));
+                final Class<?> values = javaClass(type.getTypeArguments().get(1));
+                if (collections == CollectionMode.LAZY)
+                    return new ColumnAccessor(type) {
+                        @Override
+                        Object getObject(Row row, int i) {
+                            return row.isNull(i) ? Collections.emptyMap()
+                                    : LazyCollections.map(row, i, keys, values, protocolVersion);
+                        }
+                    };
+                if (collections == CollectionMode.VIEW)
+                    return new ColumnAccessor(type) {
+                        @Override
+                        Object getObject(Row row, int i) {
+                            return Collections.unmodifiableMap(row.getMap(i, keys, values));
+                        }
+                    };
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return row.getMap(i, keys, values);
+                    }
+                };
+            default:
+                // durations and custom types
+                return new ColumnAccessor(type) {
+                    @Override
+                    Object getObject(Row row, int i) {
+                        return null;
+                    }
+                };
+        }
+    }
+
+    /**
+     * @return the Java class of the elements of a collection
+     */
+    private static Class<?> javaClass(DataType type) {
+        if (type.getName() == DataType.Name.UDT)
+            return TypesMap.getTypeForComparator("udt").getType();
+        if (type.getName() == DataType.Name.TUPLE)
+            return TypesMap.getTypeForComparator("tuple").getType();
+        return TypesMap.getTypeForComparator(type.toString()).getType();
+    }
+
+    /**
+     * @return the value of the column, as the Java type of its CQL type
+     */
+    abstract Object getObject(Row row, int i);
+
+    long getLong(Row row, int i) {
+        return row.getLong(i);
+    }
+
+    double getDouble(Row row, int i) {
+        return row.getDouble(i);
+    }
+
+    /**
+     * @return the value of the column as a string, its string representation for the columns
+     *         that are not strings
+     */
+    String getString(Row row, int i) {
+        Object value = getObject(row, i);
+        return value == null ? null : String.valueOf(value);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Row;
+
+/**
+ * A batch of rows of a result set stored by column, filled by
+ * {@link CassandraResultSetExtras#nextBatch(ColumnarBatch)} and reused from a batch to the next.
+ * <p>
+ * The values of each column are decoded straight from their serialized form into a vector
+ * matching the CQL type of the column:
+ * <ul>
+ * <li>bigint, counter, timestamp (milliseconds since the epoch) and time (nanoseconds since
+ * midnight) columns into a long vector,</li>
+ * <li>int, smallint, tinyint, date (days since the epoch) and boolean (1 for true) columns into
+ * an int vector,</li>
+ * <li>double and float columns into a double vector,</li>
+ * <li>any other column into a byte vector holding the serialized values one after the other,
+ * UTF-8 for text columns, with an offset vector giving where each one starts.</li>
+ * </ul>
+ * A null value is flagged in the null vector of its column, a bitmap with a bit per row, and
+ * leaves 0 in a primitive vector.
+ */
+public class ColumnarBatch {
+
+    private enum Vector {
+        LONG, INT, DOUBLE, BYTES
+    }
+
+    private final int capacity;
+    private int size;
+
+    private ColumnDefinitions definitions;
+    private Vector[] vectors = new Vector[0];
+    private DataType.Name[] types = new DataType.Name[0];
+
+    private long[][] nulls = new long[0][];
+    private long[][] longs = new long[0][];
+    private int[][] ints = new int[0][];
+    private double[][] doubles = new double[0][];
+    private byte[][] bytes = new byte[0][];
+    private int[][] offsets = new int[0][];
+
+    /**
+     * @param capacity the maximum count of rows of the batch
+     */
+    public ColumnarBatch(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the count of rows of the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getColumnCount() {
+        return vectors.length;
+    }
+
+    public String getColumnName(int column) {
+        return definitions.getName(column);
+    }
+
+    public DataType getColumnType(int column) {
+        return definitions.getType(column);
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Empties the batch, ready for rows of the given columns.
+     */
+    void reset(ColumnDefinitions columns) {
+        size = 0;
+        if (columns == definitions)
+            return;
+        int count = columns.size();
+        if (count != vectors.length) {
+            vectors = new Vector[count];
+            types = new DataType.Name[count];
+            nulls = new long[count][];
+            longs = new long[count][];
+            ints = new int[count][];
+            doubles = new double[count][];
+            bytes = new byte[count][];
+            offsets = new int[count][];
+        }
+        for (int i = 0; i < count; i++) {
+            types[i] = columns.getType(i).getName();
+            vectors[i] = vector(types[i]);
+            if (nulls[i] == null)
+                nulls[i] = new long[(capacity + 63) / 64];
+            switch (vectors[i]) {
+                case LONG:
+                    if (longs[i] == null)
+                        longs[i] = new long[capacity];
+                    break;
+                case INT:
+                    if (ints[i] == null)
+                        ints[i] = new int[capacity];
+                    break;
+                case DOUBLE:
+                    if (doubles[i] == null)
+                        doubles[i] = new double[capacity];
+                    break;
+                default:
+                    if (bytes[i] == null) {
+                        bytes[i] = new byte[capacity * 16];
+                        offsets[i] = new int[capacity + 1];
+                    }
+            }
+        }
+        definitions = columns;
+    }
+
+    private static Vector vector(DataType.Name type) {
+        switch (type) {
+            case BIGINT:
+            case COUNTER:
+            case TIMESTAMP:
+            case TIME:
+                return Vector.LONG;
+            case INT:
+            case SMALLINT:
+            case TINYINT:
+            case DATE:
+            case BOOLEAN:
+                return Vector.INT;
+            case DOUBLE:
+            case FLOAT:
+                return Vector.DOUBLE;
+            default:
+                return Vector.BYTES;
+        }
+    }
+
+    /**
+     * @return whether rows of the given columns can go into the current batch, that is whether
+     *         they have the same types as the columns of its rows
+     */
+    boolean accepts(ColumnDefinitions columns) {
+        if (columns == definitions)
+            return true;
+        if (columns.size() != types.length)
+            return false;
+        for (int i = 0; i < types.length; i++) {
+            if (columns.getType(i).getName() != types[i])
+                return false;
+        }
+        return true;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Adds the values of a row to the vectors of its columns.
+     */
+    void add(Row row) {
+        int r = size++;
+        for (int i = 0; i < vectors.length; i++) {
+            ByteBuffer value = row.getBytesUnsafe(i);
+            boolean isNull = value == null
+                    || (value.remaining() == 0 && vectors[i] != Vector.BYTES);
+            if (isNull)
+                nulls[i][r >>> 6] |= 1L << r;
+            else
+                nulls[i][r >>> 6] &= ~(1L << r);
+
+            int position = isNull ? 0 : value.position();
+            switch (vectors[i]) {
+                case LONG:
+                    longs[i][r] = isNull ? 0 : value.getLong(position);
+                    break;
+                case INT:
+                    if (isNull)
+                        ints[i][r] = 0;
+                    else if (types[i] == DataType.Name.SMALLINT)
+                        ints[i][r] = value.getShort(position);
+                    else if (types[i] == DataType.Name.TINYINT
+                            || types[i] == DataType.Name.BOOLEAN)
+                        ints[i][r] = value.get(position);
+                    else if (types[i] == DataType.Name.DATE)
+                        // unsigned days, the epoch being 2^31
+                        ints[i][r] = value.getInt(position) + Integer.MIN_VALUE;
+                    else
+                        ints[i][r] = value.getInt(position);
+                    break;
+                case DOUBLE:
+                    if (isNull)
+                        doubles[i][r] = 0;
+                    else if (types[i] == DataType.Name.FLOAT)
+                        doubles[i][r] = value.getFloat(position);
+                    else
+                        doubles[i][r] = value.getDouble(position);
+                    break;
+                default:
+                    int start = offsets[i][r];
+                    int length = isNull ? 0 : value.remaining();
+                    if (bytes[i].length < start + length)
+                        bytes[i] = Arrays.copyOf(bytes[i],
+                                Math.max(start + length, bytes[i].length * 2));
+                    if (length > 0 && value.hasArray())
+                        System.arraycopy(value.array(), value.arrayOffset() + position,
+                                bytes[i], start, length);
+                    else if (length > 0) {
+                        value.get(bytes[i], start, length);
+                        value.position(position);
+                    }
+                    offsets[i][r + 1] = start + length;
+            }
+        }
+    }
+
+    /**
+     * @return whether the value of a column is null in a row, starting from 0
+     */
+    public boolean isNull(int column, int row) {
+        return (nulls[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return the null bitmap of a column: the bit {@code row % 64} of the element
+     *         {@code row / 64} is set when the value of the row is null
+     */
+    public long[] getNullVector(int column) {
+        return nulls[column];
+    }
+
+    /**
+     * @return the long vector of a column, null if the column is not stored in one
+     */
+    public long[] getLongVector(int column) {
+        return vectors[column] == Vector.LONG ? longs[column] : null;
+    }
+
+    /**
+     * @return the int vector of a column, null if the column is not stored in one
+     */
+    public int[] getIntVector(int column) {
+        return vectors[column] == Vector.INT ? ints[column] : null;
+    }
+
+    /**
+     * @return the double vector of a column, null if the column is not stored in one
+     */
+    public double[] getDoubleVector(int column) {
+        return vectors[column] == Vector.DOUBLE ? doubles[column] : null;
+    }
+
+    /**
+     * @return the byte vector of a column, null if the column is not stored in one
+     */
+    public byte[] getByteVector(int column) {
+        return vectors[column] == Vector.BYTES ? bytes[column] : null;
+    }
+
+    /**
+     * @return the offset vector of the byte vector of a column: the value of the row
+     *         {@code row} is between the offsets {@code row} and {@code row + 1}; null if the
+     *         column is not stored in a byte vector
+     */
+    public int[] getOffsetVector(int column) {
+        return vectors[column] == Vector.BYTES ? offsets[column] : null;
+    }
+
+    /**
+     * @return the value of a column stored in a byte vector, as a string decoded from UTF-8, null
+     *         if it is null
+     */
+    public String getString(int column, int row) {
+        if (isNull(column, row))
+            return null;
+        int start = offsets[column][row];
+        return new String(bytes[column], start, offsets[column][row + 1] - start,
+                StandardCharsets.UTF_8);
+    }
+}
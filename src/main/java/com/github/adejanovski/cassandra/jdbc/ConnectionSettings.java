@@ -0,0 +1,168 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static com.github.adejanovski.cassandra.jdbc.Utils.PROTOCOL;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_ACTIVE_CQL_VERSION;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_ADAPTIVE_FETCH_SIZE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_BATCH_BY_PARTITION;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_BATCH_MAX_BYTES;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_BATCH_MAX_STATEMENTS;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_COLLECTIONS;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_CONSISTENCY_LEVEL;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_CQL_VERSION;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_DATABASE_NAME;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_DEBUG;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_MAX_FETCH_SIZE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_MAX_IN_FLIGHT;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_MIN_FETCH_SIZE;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_PAGE_LATENCY_BUDGET;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_PREFETCH_THRESHOLD;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_SPILL_THRESHOLD;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_TARGET_PAGE_BYTES;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_UNSET_UNBOUND_PARAMETERS;
+import static com.github.adejanovski.cassandra.jdbc.Utils.TAG_USER;
+import static com.github.adejanovski.cassandra.jdbc.Utils.booleanOption;
+import static com.github.adejanovski.cassandra.jdbc.Utils.createSubName;
+import static com.github.adejanovski.cassandra.jdbc.Utils.enumOption;
+import static com.github.adejanovski.cassandra.jdbc.Utils.intOption;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.VersionNumber;
+
+/**
+ * The settings of the connections using a session, parsed from its properties and read from its
+ * cluster once when the session is opened, so that opening a connection on a session already
+ * open only copies them.
+ * <p>
+ * The settings are immutable: the fetch size tuner is copied by each result set and the partition
+ * batcher keeps no state.
+ */
+final class ConnectionSettings {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionSettings.class);
+
+    /** properties of the session with the active CQL version, not to be modified */
+    final Properties connectionProps;
+    final String url;
+    final String keyspace;
+    final String username;
+    final boolean debugMode;
+    final int majorCqlVersion;
+    final ConsistencyLevel defaultConsistencyLevel;
+    final int maxInFlight;
+    final int prefetchThreshold;
+    final int spillThreshold;
+    final ColumnAccessor.CollectionMode collectionMode;
+    final FetchSizeTuner fetchSizeTuner;
+    final boolean unsetUnboundParameters;
+    final PartitionBatcher partitionBatcher;
+
+    /** version of the first host of the cluster, null if it is not known */
+    final VersionNumber cassandraVersion;
+
+    ConnectionSettings(Properties props, Session session) throws SQLException {
+        connectionProps = (Properties) props.clone();
+        url = PROTOCOL + createSubName(props);
+        keyspace = props.getProperty(TAG_DATABASE_NAME);
+        username = props.getProperty(TAG_USER, "");
+        debugMode = booleanOption(props, TAG_DEBUG, false);
+        String version = props.getProperty(TAG_CQL_VERSION,
+                CassandraConnection.DEFAULT_CQL_VERSION);
+        connectionProps.setProperty(TAG_ACTIVE_CQL_VERSION, version);
+        majorCqlVersion = getMajor(version);
+        defaultConsistencyLevel = enumOption(props, TAG_CONSISTENCY_LEVEL,
+                ConsistencyLevel.class, ConsistencyLevel.ONE);
+        maxInFlight = intOption(props, TAG_MAX_IN_FLIGHT, StatementPipeline.DEFAULT_MAX_IN_FLIGHT);
+        prefetchThreshold = intOption(props, TAG_PREFETCH_THRESHOLD, 0);
+        spillThreshold = intOption(props, TAG_SPILL_THRESHOLD, RowStore.DEFAULT_MEMORY_BYTES);
+        collectionMode = enumOption(props, TAG_COLLECTIONS, ColumnAccessor.CollectionMode.class,
+                ColumnAccessor.CollectionMode.COPY);
+        if (booleanOption(props, TAG_ADAPTIVE_FETCH_SIZE, false)) {
+            fetchSizeTuner = new FetchSizeTuner(
+                    intOption(props, TAG_TARGET_PAGE_BYTES,
+                            FetchSizeTuner.DEFAULT_TARGET_PAGE_BYTES),
+                    intOption(props, TAG_PAGE_LATENCY_BUDGET,
+                            FetchSizeTuner.DEFAULT_LATENCY_BUDGET_MILLIS),
+                    intOption(props, TAG_MIN_FETCH_SIZE, FetchSizeTuner.DEFAULT_MIN_FETCH_SIZE),
+                    intOption(props, TAG_MAX_FETCH_SIZE, FetchSizeTuner.DEFAULT_MAX_FETCH_SIZE));
+        } else {
+            fetchSizeTuner = null;
+        }
+
+        Configuration configuration = session.getCluster().getConfiguration();
+        ProtocolVersion protocolVersion = configuration.getProtocolOptions().getProtocolVersion();
+        unsetUnboundParameters = booleanOption(props, TAG_UNSET_UNBOUND_PARAMETERS, false)
+                && supportsUnset(protocolVersion);
+        if (booleanOption(props, TAG_BATCH_BY_PARTITION, false)) {
+            partitionBatcher = new PartitionBatcher(protocolVersion,
+                    configuration.getCodecRegistry(), session.getCluster().getMetadata(),
+                    intOption(props, TAG_BATCH_MAX_STATEMENTS,
+                            PartitionBatcher.DEFAULT_MAX_STATEMENTS),
+                    intOption(props, TAG_BATCH_MAX_BYTES, PartitionBatcher.DEFAULT_MAX_BYTES));
+        } else {
+            partitionBatcher = null;
+        }
+
+        // getAllHosts() copies the hosts of the cluster, only walk them once
+        Metadata metadata = session.getCluster().getMetadata();
+        VersionNumber firstVersion = null;
+        Iterator<Host> hosts = metadata.getAllHosts().iterator();
+        if (hosts.hasNext())
+            firstVersion = hosts.next().getCassandraVersion();
+        cassandraVersion = firstVersion;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Connected to cluster: {}", metadata.getClusterName());
+            for (Host aHost : metadata.getAllHosts()) {
+                logger.debug("Datacenter: {}; Host: {}; Rack: {}", aHost.getDatacenter(),
+                        aHost.getAddress(), aHost.getRack());
+            }
+        }
+    }
+
+    private static boolean supportsUnset(ProtocolVersion protocolVersion) {
+        if (protocolVersion == null || protocolVersion.compareTo(ProtocolVersion.V4) < 0) {
+            logger.warn("Unbound variables can not be left unset with protocol {}, they will be set to null",
+                    protocolVersion);
+            return false;
+        }
+        return true;
+    }
+
+    // get the Major portion of a string like : Major.minor.patch where 2 is the default
+    @SuppressWarnings("boxing")
+    private static int getMajor(String version) {
+        int major = 0;
+        String[] parts = version.split("\\.");
+        try {
+            major = Integer.valueOf(parts[0]);
+        } catch (Exception e) {
+            major = 2;
+        }
+        return major;
+    }
+}
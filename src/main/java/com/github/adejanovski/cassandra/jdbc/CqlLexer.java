@@ -0,0 +1,343 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.util.Arrays;
+
+/**
+ * A single-pass lexer for CQL text.
+ * <p>
+ * The lexer walks the original string without copying it: each call to {@link #next()} moves to
+ * the next token and exposes its type and its offsets in the source. It knows about single quoted
+ * strings (with '' escapes), double quoted identifiers, $$ quoted strings, line and block comments,
+ * numbers, UUIDs, blobs and bind markers, which is enough to find statement boundaries and
+ * literals without being fooled by a semicolon or a quote embedded in a string.
+ */
+final class CqlLexer {
+
+    static final int EOF = 0;
+    static final int WHITESPACE = 1;
+    static final int COMMENT = 2;
+    static final int IDENTIFIER = 3;
+    static final int QUOTED_IDENTIFIER = 4;
+    static final int STRING = 5;
+    static final int DOLLAR_STRING = 6;
+    static final int NUMBER = 7;
+    static final int DURATION = 8;
+    static final int UUID = 9;
+    static final int BLOB = 10;
+    static final int BIND_MARKER = 11;
+    static final int SEMICOLON = 12;
+    static final int SYMBOL = 13;
+
+    private final String cql;
+    private final int end;
+    private int position;
+
+    private int tokenType = EOF;
+    private int tokenStart;
+    private int tokenEnd;
+
+    CqlLexer(String cql) {
+        this(cql, 0, cql.length());
+    }
+
+    CqlLexer(String cql, int start, int end) {
+        this.cql = cql;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return the type of the token, {@link #EOF} once the end of the input has been reached
+     */
+    int next() {
+        tokenStart = position;
+        if (position >= end) {
+            tokenEnd = end;
+            return tokenType = EOF;
+        }
+
+        char c = cql.charAt(position);
+        char n = position + 1 < end ? cql.charAt(position + 1) : 0;
+
+        if (Character.isWhitespace(c)) {
+            position++;
+            while (position < end && Character.isWhitespace(cql.charAt(position)))
+                position++;
+            tokenType = WHITESPACE;
+        } else if ((c == '-' && n == '-') || (c == '/' && n == '/')) {
+            position += 2;
+            while (position < end && cql.charAt(position) != '\n')
+                position++;
+            tokenType = COMMENT;
+        } else if (c == '/' && n == '*') {
+            int close = cql.indexOf("*/", position + 2);
+            position = (close < 0 || close + 2 > end) ? end : close + 2;
+            tokenType = COMMENT;
+        } else if (c == '\'') {
+            position = skipQuoted('\'');
+            tokenType = STRING;
+        } else if (c == '"') {
+            position = skipQuoted('"');
+            tokenType = QUOTED_IDENTIFIER;
+        } else if (c == '$' && n == '$') {
+            int close = cql.indexOf("$$", position + 2);
+            position = (close < 0 || close + 2 > end) ? end : close + 2;
+            tokenType = DOLLAR_STRING;
+        } else if (isHex(c) && matchesUuid(position)) {
+            position += 36;
+            tokenType = UUID;
+        } else if (c == '0' && (n == 'x' || n == 'X')) {
+            position += 2;
+            while (position < end && isHex(cql.charAt(position)))
+                position++;
+            tokenType = BLOB;
+        } else if (isDigit(c) || (c == '-' && isDigit(n))) {
+            tokenType = scanNumber();
+        } else if (isIdentifierStart(c)) {
+            position++;
+            while (position < end && isIdentifierPart(cql.charAt(position)))
+                position++;
+            tokenType = IDENTIFIER;
+        } else if (c == '?') {
+            position++;
+            tokenType = BIND_MARKER;
+        } else if (c == ':' && isIdentifierStart(n)) {
+            position += 2;
+            while (position < end && isIdentifierPart(cql.charAt(position)))
+                position++;
+            tokenType = BIND_MARKER;
+        } else if (c == ';') {
+            position++;
+            tokenType = SEMICOLON;
+        } else {
+            position++;
+            tokenType = SYMBOL;
+        }
+
+        tokenEnd = position;
+        return tokenType;
+    }
+
+    int tokenType() {
+        return tokenType;
+    }
+
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    int tokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * @return whether the current token is neither whitespace nor a comment
+     */
+    boolean isSignificant() {
+        return tokenType != WHITESPACE && tokenType != COMMENT && tokenType != EOF;
+    }
+
+    /**
+     * @return whether the current token is a literal value that could be replaced by a bind marker
+     */
+    boolean isLiteral() {
+        return tokenType == STRING || tokenType == DOLLAR_STRING || tokenType == NUMBER
+                || tokenType == UUID || tokenType == BLOB;
+    }
+
+    /**
+     * Case-insensitive comparison of the current token with a keyword, without allocating.
+     */
+    boolean isKeyword(String keyword) {
+        return tokenType == IDENTIFIER && tokenEnd - tokenStart == keyword.length()
+                && cql.regionMatches(true, tokenStart, keyword, 0, keyword.length());
+    }
+
+    String tokenText() {
+        return cql.substring(tokenStart, tokenEnd);
+    }
+
+    private int skipQuoted(char quote) {
+        int i = position + 1;
+        while (i < end) {
+            if (cql.charAt(i) == quote) {
+                // a doubled quote is an escaped quote, not the end of the token
+                if (i + 1 < end && cql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return end;
+    }
+
+    private int scanNumber() {
+        if (cql.charAt(position) == '-')
+            position++;
+        while (position < end && isDigit(cql.charAt(position)))
+            position++;
+        if (position + 1 < end && cql.charAt(position) == '.'
+                && isDigit(cql.charAt(position + 1))) {
+            position++;
+            while (position < end && isDigit(cql.charAt(position)))
+                position++;
+        }
+        if (position < end && (cql.charAt(position) == 'e' || cql.charAt(position) == 'E')) {
+            int i = position + 1;
+            if (i < end && (cql.charAt(i) == '+' || cql.charAt(i) == '-'))
+                i++;
+            if (i < end && isDigit(cql.charAt(i))) {
+                position = i;
+                while (position < end && isDigit(cql.charAt(position)))
+                    position++;
+            }
+        }
+        if (position < end && isIdentifierStart(cql.charAt(position))) {
+            // duration literals such as 1h30m are a number immediately followed by units
+            while (position < end && isIdentifierPart(cql.charAt(position)))
+                position++;
+            return DURATION;
+        }
+        return NUMBER;
+    }
+
+    private boolean matchesUuid(int from) {
+        if (from + 36 > end)
+            return false;
+        for (int i = 0; i < 36; i++) {
+            char c = cql.charAt(from + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-')
+                    return false;
+            } else if (!isHex(c)) {
+                return false;
+            }
+        }
+        return from + 36 == end || !isIdentifierPart(cql.charAt(from + 36));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHex(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    /**
+     * Splits a CQL script into statements in a single pass.
+     * <p>
+     * Semicolons inside strings, quoted identifiers, comments and BEGIN ... APPLY BATCH blocks do
+     * not end a statement. Leading and trailing whitespace and comments are excluded from each
+     * statement, the terminating semicolon too, and statements that are empty once trimmed are
+     * skipped.
+     */
+    static Statements split(String cql) {
+        Statements statements = new Statements(cql);
+        CqlLexer lexer = new CqlLexer(cql);
+
+        int start = -1;
+        int last = -1;
+        boolean first = true;
+        boolean inBatch = false;
+        boolean afterApply = false;
+
+        int type;
+        while ((type = lexer.next()) != EOF) {
+            if (!lexer.isSignificant())
+                continue;
+
+            if (type == SEMICOLON && !inBatch) {
+                if (start >= 0)
+                    statements.add(start, last);
+                start = -1;
+                first = true;
+                continue;
+            }
+
+            if (start < 0)
+                start = lexer.tokenStart();
+            last = lexer.tokenEnd();
+
+            if (first) {
+                inBatch = lexer.isKeyword("BEGIN");
+                first = false;
+            } else if (inBatch) {
+                if (afterApply && lexer.isKeyword("BATCH"))
+                    inBatch = false;
+                afterApply = lexer.isKeyword("APPLY");
+            }
+        }
+        if (start >= 0)
+            statements.add(start, last);
+
+        return statements;
+    }
+
+    /**
+     * Statement boundaries found by {@link CqlLexer#split(String)}, stored as offsets into the
+     * original CQL string.
+     */
+    static final class Statements {
+        private final String cql;
+        private int[] offsets = new int[16];
+        private int size;
+
+        private Statements(String cql) {
+            this.cql = cql;
+        }
+
+        private void add(int start, int end) {
+            if (2 * size + 2 > offsets.length)
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[2 * size] = start;
+            offsets[2 * size + 1] = end;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int start(int index) {
+            return offsets[2 * index];
+        }
+
+        int end(int index) {
+            return offsets[2 * index + 1];
+        }
+
+        /**
+         * @return the text of the statement; the only place where the source gets copied
+         */
+        String get(int index) {
+            return cql.substring(start(index), end(index));
+        }
+    }
+}
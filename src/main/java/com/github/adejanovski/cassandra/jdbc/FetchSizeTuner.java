@@ -0,0 +1,114 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.driver.core.Row;
+
+/**
+ * Picks the fetch size of the next pages of a result set from the size of its rows and the time
+ * its pages took to come.
+ * <p>
+ * The fetch size moves toward the count of rows that fills a page of the target size, and is cut
+ * down when pages take longer than the latency budget. It at most doubles or halves from one page
+ * to the next, so that a single odd page does not make it swing, and stays between the minimum
+ * and the maximum fetch sizes.
+ */
+final class FetchSizeTuner {
+
+    static final int DEFAULT_TARGET_PAGE_BYTES = 1024 * 1024;
+
+    static final int DEFAULT_LATENCY_BUDGET_MILLIS = 500;
+
+    static final int DEFAULT_MIN_FETCH_SIZE = 10;
+
+    static final int DEFAULT_MAX_FETCH_SIZE = 10000;
+
+    // weight of the last sample in the running averages
+    private static final double WEIGHT = 0.3;
+
+    private final int targetPageBytes;
+    private final long latencyBudgetNanos;
+    private final int minFetchSize;
+    private final int maxFetchSize;
+
+    // running averages, 0 until the first sample
+    private double rowBytes;
+    private double pageNanosPerRow;
+
+    FetchSizeTuner(int targetPageBytes, int latencyBudgetMillis, int minFetchSize,
+            int maxFetchSize) {
+        this.targetPageBytes = targetPageBytes;
+        this.latencyBudgetNanos = TimeUnit.MILLISECONDS.toNanos(latencyBudgetMillis);
+        this.minFetchSize = minFetchSize;
+        this.maxFetchSize = Math.max(minFetchSize, maxFetchSize);
+    }
+
+    /**
+     * @return a tuner with the same settings and no samples, for another result set
+     */
+    FetchSizeTuner copy() {
+        return new FetchSizeTuner(targetPageBytes,
+                (int) TimeUnit.NANOSECONDS.toMillis(latencyBudgetNanos), minFetchSize,
+                maxFetchSize);
+    }
+
+    /**
+     * Samples the size of a row, as the size of its serialized values.
+     */
+    void sampleRow(Row row, int columnCount) {
+        int bytes = 0;
+        for (int i = 0; i < columnCount; i++) {
+            ByteBuffer value = row.getBytesUnsafe(i);
+            if (value != null)
+                bytes += value.remaining();
+        }
+        sampleRowBytes(bytes);
+    }
+
+    void sampleRowBytes(int bytes) {
+        rowBytes = average(rowBytes, bytes);
+    }
+
+    /**
+     * Samples the time a page of the given fetch size took to come, ignored if either is unknown
+     * (0).
+     */
+    void samplePage(long nanos, int fetchSize) {
+        if (nanos > 0 && fetchSize > 0)
+            pageNanosPerRow = average(pageNanosPerRow, (double) nanos / fetchSize);
+    }
+
+    private static double average(double average, double sample) {
+        return average == 0 ? sample : average + WEIGHT * (sample - average);
+    }
+
+    /**
+     * @return the fetch size of the next page, given the one of the previous page
+     */
+    int nextFetchSize(int fetchSize) {
+        if (fetchSize <= 0)
+            return fetchSize;
+        double size = fetchSize;
+        if (rowBytes > 0)
+            size = targetPageBytes / rowBytes;
+        if (pageNanosPerRow > 0)
+            size = Math.min(size, latencyBudgetNanos / pageNanosPerRow);
+        size = Math.max(fetchSize / 2.0, Math.min(fetchSize * 2.0, size));
+        return (int) Math.max(minFetchSize, Math.min(maxFetchSize, size));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.datastax.driver.core.CodecUtils;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+
+/**
+ * Read only collections over the value of a collection column of a row, only decoded by the
+ * driver when their elements are first accessed: their size is read from the serialized value.
+ * They keep a reference to their row until then.
+ */
+final class LazyCollections {
+
+    private LazyCollections() {
+    }
+
+    /**
+     * @return the count of elements of a serialized collection, 0 if it is null
+     */
+    private static int readSize(Row row, int i, ProtocolVersion protocolVersion) {
+        ByteBuffer bytes = row.getBytesUnsafe(i);
+        if (bytes == null || !bytes.hasRemaining())
+            return 0;
+        return CodecUtils.readSize(bytes.duplicate(), protocolVersion);
+    }
+
+    static <E> List<E> list(final Row row, final int i, final Class<E> elements,
+            final ProtocolVersion protocolVersion) {
+        return new AbstractList<E>() {
+            private int size = -1;
+            private List<E> decoded;
+
+            private List<E> decoded() {
+                if (decoded == null)
+                    decoded = row.getList(i, elements);
+                return decoded;
+            }
+
+            @Override
+            public int size() {
+                if (size < 0)
+                    size = decoded != null ? decoded.size() : readSize(row, i, protocolVersion);
+                return size;
+            }
+
+            @Override
+            public E get(int index) {
+                return decoded().get(index);
+            }
+        };
+    }
+
+    static <E> Set<E> set(final Row row, final int i, final Class<E> elements,
+            final ProtocolVersion protocolVersion) {
+        return new AbstractSet<E>() {
+            private int size = -1;
+            private Set<E> decoded;
+
+            private Set<E> decoded() {
+                if (decoded == null)
+                    decoded = row.getSet(i, elements);
+                return decoded;
+            }
+
+            @Override
+            public int size() {
+                if (size < 0)
+                    size = decoded != null ? decoded.size() : readSize(row, i, protocolVersion);
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return decoded().contains(o);
+            }
+
+            @Override
+            public Iterator<E> iterator() {
+                return Collections.unmodifiableSet(decoded()).iterator();
+            }
+        };
+    }
+
+    static <K, V> Map<K, V> map(final Row row, final int i, final Class<K> keys,
+            final Class<V> values, final ProtocolVersion protocolVersion) {
+        return new AbstractMap<K, V>() {
+            private int size = -1;
+            private Map<K, V> decoded;
+
+            private Map<K, V> decoded() {
+                if (decoded == null)
+                    decoded = row.getMap(i, keys, values);
+                return decoded;
+            }
+
+            @Override
+            public int size() {
+                if (size < 0)
+                    size = decoded != null ? decoded.size() : readSize(row, i, protocolVersion);
+                return size;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return decoded().containsKey(key);
+            }
+
+            @Override
+            public V get(Object key) {
+                return decoded().get(key);
+            }
+
+            @Override
+            public Set<Map.Entry<K, V>> entrySet() {
+                return Collections.unmodifiableMap(decoded()).entrySet();
+            }
+        };
+    }
+}
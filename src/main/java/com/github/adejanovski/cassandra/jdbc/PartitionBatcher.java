@@ -0,0 +1,228 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+
+/**
+ * Groups the rows of a JDBC batch by partition into UNLOGGED {@link BatchStatement}s.
+ * <p>
+ * Rows are grouped by the routing key of their statement, so that each batch only touches one
+ * partition: it is sent to a replica of that partition by the token aware load balancing (the
+ * routing key of a batch is the one of its first statement) and is applied there as a single
+ * mutation. A batch is closed once it holds the maximum count of statements, or once adding a
+ * statement would make its bound values exceed the maximum size. Rows without a routing key are
+ * executed alone.
+ * <p>
+ * The statements of a batch share one write timestamp, so the later of two writes to the same cell
+ * of a batch would not win. A batch is therefore also closed before a row whose clustering key
+ * was already written by it, the rows writing the same CQL row being applied in their JDBC batch
+ * order. Rows of a table missing from the cluster metadata are never batched with another row of
+ * their partition.
+ */
+final class PartitionBatcher {
+
+    static final int DEFAULT_MAX_STATEMENTS = 100;
+
+    // the default batch_size_warn_threshold_in_kb of Cassandra
+    static final int DEFAULT_MAX_BYTES = 5 * 1024;
+
+    /**
+     * A statement to execute, either a single row or an UNLOGGED batch of rows.
+     */
+    static final class Group {
+        final Statement statement;
+
+        /** the indexes of the rows executed by the statement, in the JDBC batch */
+        final int[] rows;
+
+        Group(Statement statement, int[] rows) {
+            this.statement = statement;
+            this.rows = rows;
+        }
+    }
+
+    private final ProtocolVersion protocolVersion;
+    private final CodecRegistry codecRegistry;
+    private final Metadata metadata;
+    private final int maxStatements;
+    private final int maxBytes;
+
+    PartitionBatcher(ProtocolVersion protocolVersion, CodecRegistry codecRegistry,
+            Metadata metadata, int maxStatements, int maxBytes) {
+        this.protocolVersion = protocolVersion;
+        this.codecRegistry = codecRegistry;
+        this.metadata = metadata;
+        this.maxStatements = Math.max(1, maxStatements);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the statements executing the given rows, each row being executed by exactly one of
+     *         them
+     */
+    List<Group> group(List<BoundStatement> statements) {
+        List<Group> groups = new ArrayList<Group>();
+        Map<ByteBuffer, Partition> partitions = new LinkedHashMap<ByteBuffer, Partition>();
+        Map<PreparedStatement, int[]> clusteringColumns = new HashMap<PreparedStatement, int[]>();
+
+        for (int i = 0; i < statements.size(); i++) {
+            BoundStatement statement = statements.get(i);
+            ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+            if (routingKey == null) {
+                groups.add(new Group(statement, new int[] { i }));
+                continue;
+            }
+
+            int bytes = size(statement);
+            ByteBuffer clusteringKey = clusteringKey(statement, clusteringColumns);
+            Partition partition = partitions.get(routingKey);
+            if (partition != null && (partition.rows.size() >= maxStatements
+                    || partition.bytes + bytes > maxBytes
+                    || partition.clusteringKeys.contains(clusteringKey))) {
+                groups.add(partition.close());
+                partition = null;
+            }
+            if (partition == null) {
+                partition = new Partition();
+                partitions.put(routingKey, partition);
+            }
+            partition.add(statement, i, bytes, clusteringKey);
+        }
+
+        for (Partition partition : partitions.values())
+            groups.add(partition.close());
+        return groups;
+    }
+
+    /**
+     * @return the values bound to the clustering columns of the statement, each preceded by its
+     *         length (-1 for null or unset), empty for a table without clustering columns or
+     *         missing from the cluster metadata
+     */
+    private ByteBuffer clusteringKey(BoundStatement statement,
+            Map<PreparedStatement, int[]> clusteringColumns) {
+        PreparedStatement prepared = statement.preparedStatement();
+        int[] indexes = clusteringColumns.get(prepared);
+        if (indexes == null) {
+            indexes = clusteringColumns(prepared.getVariables());
+            clusteringColumns.put(prepared, indexes);
+        }
+
+        int length = 0;
+        for (int index : indexes) {
+            ByteBuffer value = statement.isSet(index) ? statement.getBytesUnsafe(index) : null;
+            length += 4 + (value == null ? 0 : value.remaining());
+        }
+        ByteBuffer key = ByteBuffer.allocate(length);
+        for (int index : indexes) {
+            ByteBuffer value = statement.isSet(index) ? statement.getBytesUnsafe(index) : null;
+            if (value == null) {
+                key.putInt(-1);
+            } else {
+                key.putInt(value.remaining());
+                key.put(value.duplicate());
+            }
+        }
+        key.flip();
+        return key;
+    }
+
+    /**
+     * @return the indexes of the variables bound to the clustering columns of the table
+     */
+    private int[] clusteringColumns(ColumnDefinitions variables) {
+        if (variables.size() == 0)
+            return new int[0];
+        KeyspaceMetadata keyspace = metadata.getKeyspace(Metadata.quote(variables.getKeyspace(0)));
+        TableMetadata table = keyspace == null ? null
+                : keyspace.getTable(Metadata.quote(variables.getTable(0)));
+        if (table == null)
+            return new int[0];
+
+        List<ColumnMetadata> columns = table.getClusteringColumns();
+        int[] indexes = new int[columns.size()];
+        int count = 0;
+        for (ColumnMetadata column : columns) {
+            int index = variables.getIndexOf(Metadata.quote(column.getName()));
+            // a clustering column that is not bound has the same value for every row
+            if (index >= 0)
+                indexes[count++] = index;
+        }
+        int[] bound = new int[count];
+        System.arraycopy(indexes, 0, bound, 0, count);
+        return bound;
+    }
+
+    /**
+     * @return the size of the values bound to the statement
+     */
+    private static int size(BoundStatement statement) {
+        int bytes = 0;
+        int count = statement.preparedStatement().getVariables().size();
+        for (int i = 0; i < count; i++) {
+            if (statement.isSet(i)) {
+                ByteBuffer value = statement.getBytesUnsafe(i);
+                if (value != null)
+                    bytes += value.remaining();
+            }
+        }
+        return bytes;
+    }
+
+    private static final class Partition {
+        private final List<BoundStatement> statements = new ArrayList<BoundStatement>();
+        private final List<Integer> rows = new ArrayList<Integer>();
+        private final Set<ByteBuffer> clusteringKeys = new HashSet<ByteBuffer>();
+        private int bytes;
+
+        void add(BoundStatement statement, int row, int size, ByteBuffer clusteringKey) {
+            statements.add(statement);
+            rows.add(row);
+            clusteringKeys.add(clusteringKey);
+            bytes += size;
+        }
+
+        Group close() {
+            int[] indexes = new int[rows.size()];
+            for (int i = 0; i < indexes.length; i++)
+                indexes[i] = rows.get(i);
+            if (statements.size() == 1)
+                return new Group(statements.get(0), indexes);
+            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            batch.addAll(statements);
+            return new Group(batch, indexes);
+        }
+    }
+}
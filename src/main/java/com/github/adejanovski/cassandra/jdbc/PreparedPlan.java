@@ -0,0 +1,56 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.PreparedStatement;
+
+/**
+ * The part of a prepared statement that does not depend on the values bound to it: the driver
+ * {@link PreparedStatement}, the definitions of its variables and the {@link VariableBinder}s
+ * converting the values bound to them.
+ * <p>
+ * A plan is immutable and shared by every {@link CassandraPreparedStatement} created for the same
+ * CQL on a session; the bound values live in each CassandraPreparedStatement, so that many threads
+ * can execute the same CQL concurrently, each with its own statement.
+ */
+final class PreparedPlan {
+
+    final PreparedStatement prepared;
+
+    final ColumnDefinitions variables;
+
+    /** the count of bound variables, as returned by the server when preparing the CQL */
+    final int count;
+
+    /** one binder per variable */
+    final VariableBinder[] binders;
+
+    PreparedPlan(PreparedStatement prepared, CodecRegistry codecRegistry) {
+        this.prepared = prepared;
+        this.variables = prepared.getVariables();
+        this.count = variables.size();
+        this.binders = VariableBinder.of(variables, codecRegistry);
+    }
+
+    /**
+     * @return a new statement to bind values to
+     */
+    BoundStatement bind() {
+        return new BoundStatement(prepared);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ProtocolVersion;
+
+/**
+ * The columns of a {@link CassandraResultSet}: their definitions, their {@link ColumnAccessor}s,
+ * and the index of each column label.
+ * <p>
+ * Labels are resolved like the driver does: a label between double quotes is case sensitive,
+ * any other label is first looked up as is, then case insensitively. When several columns have
+ * the same label, the first one wins.
+ */
+final class ResultColumns {
+
+    final ColumnDefinitions definitions;
+
+    final ColumnAccessor[] accessors;
+
+    // the index (from 1) of each label, as is and in lower case
+    private final Map<String, Integer> labels;
+    private final Map<String, Integer> lowerCaseLabels;
+
+    ResultColumns(ColumnDefinitions definitions) {
+        this(definitions, ColumnAccessor.CollectionMode.COPY, null);
+    }
+
+    ResultColumns(ColumnDefinitions definitions, ColumnAccessor.CollectionMode collections,
+            ProtocolVersion protocolVersion) {
+        this.definitions = definitions;
+        this.accessors = ColumnAccessor.of(definitions, collections, protocolVersion);
+        int size = definitions.size();
+        this.labels = new HashMap<String, Integer>(size * 2);
+        this.lowerCaseLabels = new HashMap<String, Integer>(size * 2);
+        for (int i = size - 1; i >= 0; i--) {
+            // going backwards, so that the first column with a label is the one kept
+            String name = definitions.getName(i);
+            labels.put(name, i + 1);
+            lowerCaseLabels.put(name.toLowerCase(), i + 1);
+        }
+    }
+
+    /**
+     * @return the index of the column with the given label, starting from 1, or -1 if there is
+     *         none
+     */
+    int indexOf(String label) {
+        Integer index;
+        if (label.length() > 1 && label.charAt(0) == '"' && label.charAt(label.length() - 1) == '"')
+            index = labels.get(label.substring(1, label.length() - 1));
+        else {
+            index = labels.get(label);
+            if (index == null)
+                index = lowerCaseLabels.get(label.toLowerCase());
+        }
+        return index == null ? -1 : index;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.datastax.driver.core.AbstractGettableData;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+import com.datastax.driver.core.utils.Bytes;
+
+/**
+ * The rows read so far by a scrollable {@link CassandraResultSet}, so that it can move back to
+ * any of them without running its query again.
+ * <p>
+ * Rows are kept as their serialized values, one after the other: the index of their column
+ * definitions, then the length of each value (-1 for null) followed by its bytes. They are kept
+ * in memory up to a threshold, then spilled to a temporary file that is read through memory
+ * mappings, so that the heap only holds the offset of each row.
+ */
+final class RowStore implements Closeable {
+
+    static final int DEFAULT_MEMORY_BYTES = 8 * 1024 * 1024;
+
+    // size of the mappings of the file, rows across two of them are read instead
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    // the name of the columns of the partition key token, as the driver finds them
+    private static final Pattern TOKEN_COLUMN_NAME = Pattern.compile("(system\\.)?token(.*)");
+
+    private final ProtocolVersion protocolVersion;
+    private final CodecRegistry codecRegistry;
+    // makes the tokens of token columns, null if the tokens are not kept
+    private final Metadata metadata;
+    private final int memoryBytes;
+
+    // the column definitions of the rows, a new one for each statement of a merged result set
+    private final List<ColumnDefinitions> definitions = new ArrayList<ColumnDefinitions>();
+
+    // the offset of each row, followed by the end of the last one
+    private long[] offsets = new long[64];
+    private int size;
+
+    // the row being added
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    // the rows while they fit in memory, null once spilled
+    private ByteBuffer memory = ByteBuffer.allocate(1024);
+
+    // the rows once spilled, the last ones in the write buffer until it is flushed
+    private FileChannel file;
+    private ByteBuffer writeBuffer;
+    private long written;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    RowStore(ProtocolVersion protocolVersion, CodecRegistry codecRegistry, Metadata metadata,
+            int memoryBytes) {
+        this.protocolVersion = protocolVersion;
+        this.codecRegistry = codecRegistry;
+        this.metadata = metadata;
+        this.memoryBytes = memoryBytes;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the rows no longer fit in memory
+     */
+    boolean spilled() {
+        return file != null;
+    }
+
+    void add(Row row) throws IOException {
+        ColumnDefinitions columns = row.getColumnDefinitions();
+        int definitionsIndex = definitions.size() - 1;
+        if (definitionsIndex < 0 || definitions.get(definitionsIndex) != columns) {
+            definitions.add(columns);
+            definitionsIndex++;
+        }
+
+        int count = columns.size();
+        int length = 4 + 4 * count;
+        ByteBuffer[] values = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = row.getBytesUnsafe(i);
+            if (values[i] != null)
+                length += values[i].remaining();
+        }
+        if (scratch.capacity() < length)
+            scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+        scratch.clear();
+        scratch.putInt(definitionsIndex);
+        for (ByteBuffer value : values) {
+            if (value == null)
+                scratch.putInt(-1);
+            else
+                scratch.putInt(value.remaining()).put(value.duplicate());
+        }
+        scratch.flip();
+        append(scratch);
+
+        if (size + 1 == offsets.length)
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[size + 1] = offsets[size] + length;
+        size++;
+    }
+
+    private void append(ByteBuffer bytes) throws IOException {
+        int length = bytes.remaining();
+        if (memory != null) {
+            if (memory.position() + length <= memoryBytes) {
+                if (memory.remaining() < length) {
+                    ByteBuffer grown = ByteBuffer.allocate(Math.min(memoryBytes,
+                            Math.max(memory.position() + length, memory.capacity() * 2)));
+                    memory.flip();
+                    memory = grown.put(memory);
+                }
+                memory.put(bytes);
+                return;
+            }
+            spill();
+        }
+        if (writeBuffer.remaining() < length)
+            flush();
+        if (length > writeBuffer.capacity())
+            write(bytes);
+        else
+            writeBuffer.put(bytes);
+    }
+
+    /**
+     * Moves the rows from memory to a temporary file, deleted right away where the file system
+     * allows it, and on exit otherwise.
+     */
+    private void spill() throws IOException {
+        File path = File.createTempFile("cassandra-jdbc-", ".rows");
+        file = FileChannel.open(path.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!path.delete())
+            path.deleteOnExit();
+        memory.flip();
+        write(memory);
+        memory = null;
+        writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        write(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining())
+            written += file.write(bytes, written);
+    }
+
+    /**
+     * @return the row at the given index, starting from 0, its values decoded as they are read
+     */
+    Row get(int index) throws IOException {
+        long offset = offsets[index];
+        ByteBuffer bytes = read(offset, (int) (offsets[index + 1] - offset));
+        ColumnDefinitions columns = definitions.get(bytes.getInt());
+        ByteBuffer[] values = new ByteBuffer[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            int length = bytes.getInt();
+            if (length >= 0) {
+                ByteBuffer value = bytes.slice();
+                value.limit(length);
+                values[i] = value;
+                bytes.position(bytes.position() + length);
+            }
+        }
+        return new StoredRow(columns, values);
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if (memory != null) {
+            ByteBuffer bytes = memory.duplicate();
+            bytes.limit((int) offset + length).position((int) offset);
+            return bytes.slice();
+        }
+        if (offset + length > written)
+            flush();
+        int segment = (int) (offset / SEGMENT_BYTES);
+        long segmentStart = (long) segment * SEGMENT_BYTES;
+        if (offset + length <= segmentStart + SEGMENT_BYTES
+                && segmentStart + SEGMENT_BYTES <= written) {
+            while (segments.size() <= segment)
+                segments.add(null);
+            MappedByteBuffer mapping = segments.get(segment);
+            if (mapping == null) {
+                mapping = file.map(FileChannel.MapMode.READ_ONLY, segmentStart, SEGMENT_BYTES);
+                segments.set(segment, mapping);
+            }
+            ByteBuffer bytes = mapping.duplicate();
+            bytes.limit((int) (offset - segmentStart) + length)
+                    .position((int) (offset - segmentStart));
+            return bytes.slice();
+        }
+        // across two mappings, or in the last segment which is still being written
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (file.read(bytes, offset + bytes.position()) < 0)
+                throw new IOException("unexpected end of the rows file");
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    public void close() throws IOException {
+        memory = null;
+        segments.clear();
+        if (file != null)
+            file.close();
+    }
+
+    /**
+     * A row read back from the store, its values decoded by the codecs of the driver as the ones
+     * of the rows of the driver are.
+     */
+    private final class StoredRow extends AbstractGettableData implements Row {
+
+        private final ColumnDefinitions columns;
+        private final ByteBuffer[] values;
+
+        StoredRow(ColumnDefinitions columns, ByteBuffer[] values) {
+            super(RowStore.this.protocolVersion);
+            this.columns = columns;
+            this.values = values;
+        }
+
+        public ColumnDefinitions getColumnDefinitions() {
+            return columns;
+        }
+
+        @Override
+        protected DataType getType(int i) {
+            return columns.getType(i);
+        }
+
+        @Override
+        protected String getName(int i) {
+            return columns.getName(i);
+        }
+
+        @Override
+        protected ByteBuffer getValue(int i) {
+            return values[i];
+        }
+
+        @Override
+        protected CodecRegistry getCodecRegistry() {
+            return codecRegistry;
+        }
+
+        @Override
+        protected int getIndexOf(String name) {
+            int index = columns.getIndexOf(name);
+            if (index < 0)
+                throw new IllegalArgumentException(name + " is not a column of this row");
+            return index;
+        }
+
+        /**
+         * Makes the token of the partitioner of the cluster again from the value of the column,
+         * which is of the type of the tokens of the partitioner.
+         */
+        public Token getToken(int i) {
+            if (metadata == null)
+                throw new IllegalStateException("no cluster metadata to make tokens with");
+            ByteBuffer value = values[i];
+            if (value == null || !value.hasRemaining())
+                return null;
+            DataType type = columns.getType(i);
+            Object decoded = codecRegistry.codecFor(type).deserialize(value.duplicate(),
+                    protocolVersion);
+            Token token = metadata.newToken(decoded instanceof ByteBuffer
+                    ? Bytes.toHexString((ByteBuffer) decoded) : decoded.toString());
+            if (!token.getType().equals(type))
+                throw new InvalidTypeException(String.format(
+                        "Column %s is of type %s, not of the token type %s", columns.getName(i),
+                        type, token.getType()));
+            return token;
+        }
+
+        public Token getToken(String name) {
+            return getToken(getIndexOf(name));
+        }
+
+        public Token getPartitionKeyToken() {
+            for (int i = 0; i < columns.size(); i++) {
+                if (TOKEN_COLUMN_NAME.matcher(columns.getName(i)).matches())
+                    return getToken(i);
+            }
+            throw new IllegalStateException(
+                    "Found no column named 'token(...)'. If the column is aliased, use getToken(String).");
+        }
+    }
+}
@@ -14,44 +14,34 @@
  */
 package com.github.adejanovski.cassandra.jdbc;
 
-import com.datastax.driver.core.Cluster;
-import com.datastax.driver.core.CodecRegistry;
-import com.datastax.driver.core.RemoteEndpointAwareJdkSSLOptions;
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.SocketOptions;
-import com.datastax.driver.core.SSLOptions;
-import com.datastax.driver.core.TypeCodec;
 import com.datastax.driver.core.exceptions.DriverException;
-import com.datastax.driver.core.policies.RoundRobinPolicy;
-import com.datastax.driver.core.policies.TokenAwarePolicy;
-import com.github.adejanovski.cassandra.jdbc.codec.BigDecimalToBigintCodec;
-import com.github.adejanovski.cassandra.jdbc.codec.DoubleToDecimalCodec;
-import com.github.adejanovski.cassandra.jdbc.codec.DoubleToFloatCodec;
-import com.github.adejanovski.cassandra.jdbc.codec.IntToLongCodec;
-import com.github.adejanovski.cassandra.jdbc.codec.ListCustomTypeCodec;
-import com.github.adejanovski.cassandra.jdbc.codec.LongToIntCodec;
-import com.github.adejanovski.cassandra.jdbc.codec.UdtTypeCodec;
-import com.github.adejanovski.cassandra.jdbc.codec.TimestampToLongCodec;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.SSLContext;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.math.BigDecimal;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.security.KeyStore;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.github.adejanovski.cassandra.jdbc.Utils.*;
@@ -60,18 +50,47 @@ import static com.github.adejanovski.cassandra.jdbc.Utils.*;
  * Holds a {@link Session} shared among multiple {@link CassandraConnection} objects.
  * <p>
  * This class uses reference counting to track if active CassandraConnections still use the
- * Session. When the last CassandraConnection has closed, the Session gets closed.
+ * Session. When the last CassandraConnection has closed, the Session gets closed, right away or,
+ * with an idle timeout, once it has stayed unused for that long: until then it is reused by new
+ * connections, which do not pay for the bootstrap of a cluster again.
+ * <p>
+ * Sessions of different keyspaces on the same cluster share its {@link ClusterHolder}.
  */
 class SessionHolder {
 
     private static final Logger logger = LoggerFactory.getLogger(SessionHolder.class);
     final Session session;
     final Properties properties;
+    // the cluster of the session, shared with the sessions of other keyspaces
+    private final ClusterHolder clusterHolder;
+    // bytes exchanged with the cluster, before and after compression
+    final TrafficCounter traffic;
+    // settings of the connections using the session, computed once for all of them
+    final ConnectionSettings settings;
+    // null unless the automatic parameterization of ad-hoc statements is enabled
+    final AutoParameterizer autoParameterizer;
+    // prepared plans shared by all the connections using the session, by keyspace and CQL
+    private final LoadingCache<Map.Entry<String, String>, PreparedPlan> preparedStatements;
+    static final int DEFAULT_PREPARED_CACHE_SIZE = 1000;
     private final LoadingCache<Map<String, String>, SessionHolder> parentCache;
     private final Map<String, String> cacheKey;
     private final AtomicInteger references = new AtomicInteger();
     static final String URL_KEY = "jdbcUrl";
 
+    // how often idle sessions are looked for
+    static final long EVICTION_INTERVAL_MILLIS = 1000;
+
+    // the sessions left unused with an idle timeout, some of them used again since
+    private static final Set<SessionHolder> idleSessions = Sets.newConcurrentHashSet();
+    private static ScheduledExecutorService evictor;
+
+    // milliseconds the session stays open once unused, 0 to close it right away
+    private final long idleTimeoutMillis;
+    // count of idle sessions, the most recently used ones, kept open past their idle timeout
+    private final int minIdleSessions;
+    // when the last connection using the session was closed
+    private volatile long idleSince;
+
     SessionHolder(Map<String, String> params,
             LoadingCache<Map<String, String>, SessionHolder> parentCache) throws SQLException {
         this.cacheKey = params;
@@ -91,7 +110,79 @@ class SessionHolder {
         if (logger.isDebugEnabled())
             logger.debug("Final Properties to Connection: {}", properties);
 
-        session = createSession(properties);
+        // parsed before opening anything, so that a bad value leaves nothing open
+        idleTimeoutMillis = longOption(properties, TAG_SESSION_IDLE_TIMEOUT, 0);
+        minIdleSessions = intOption(properties, TAG_MIN_IDLE_SESSIONS, 0);
+        int autoPrepareThreshold = intOption(properties, TAG_AUTO_PREPARE_THRESHOLD,
+                AutoParameterizer.DEFAULT_THRESHOLD);
+        int autoPrepareCacheSize = intOption(properties, TAG_AUTO_PREPARE_CACHE_SIZE,
+                AutoParameterizer.DEFAULT_CACHE_SIZE);
+        int preparedCacheSize = intOption(properties, TAG_PREPARED_CACHE_SIZE,
+                DEFAULT_PREPARED_CACHE_SIZE);
+
+        clusterHolder = ClusterHolder.acquire(properties);
+        traffic = clusterHolder.traffic;
+        try {
+            session = clusterHolder.cluster.connect(properties.getProperty(TAG_DATABASE_NAME));
+        } catch (DriverException e) {
+            clusterHolder.release(e);
+            throw new SQLNonTransientConnectionException(e);
+        }
+        boolean opened = false;
+        try {
+            settings = new ConnectionSettings(properties, session);
+
+            if (booleanOption(properties, TAG_AUTO_PREPARE, false)) {
+                autoParameterizer = new AutoParameterizer(session, autoPrepareThreshold,
+                        autoPrepareCacheSize);
+            } else {
+                autoParameterizer = null;
+            }
+
+            preparedStatements = CacheBuilder.newBuilder()
+                    .maximumSize(preparedCacheSize)
+                    .recordStats()
+                    .build(new CacheLoader<Map.Entry<String, String>, PreparedPlan>() {
+                        @Override
+                        public PreparedPlan load(Map.Entry<String, String> key) {
+                            return new PreparedPlan(session.prepare(key.getValue()),
+                                    session.getCluster().getConfiguration().getCodecRegistry());
+                        }
+                    });
+            opened = true;
+        } catch (IllegalArgumentException e) {
+            throw new SQLNonTransientConnectionException(e.getMessage(), e);
+        } finally {
+            if (!opened) {
+                session.close();
+                clusterHolder.release();
+            }
+        }
+        if (settings.cassandraVersion != null) {
+            // TODO this is shared among all Connections, what if they belong to different clusters?
+            CassandraConnection.DB_MAJOR_VERSION = settings.cassandraVersion.getMajor();
+            CassandraConnection.DB_MINOR_VERSION = settings.cassandraVersion.getMinor();
+            CassandraConnection.DB_REVISION = settings.cassandraVersion.getPatch();
+        }
+    }
+
+    /**
+     * Prepares a statement, or returns the plan already prepared for the same CQL in the current
+     * keyspace of the session.
+     */
+    PreparedPlan prepare(String cql) throws SQLException {
+        try {
+            return preparedStatements
+                    .get(Maps.immutableEntry(session.getLoggedKeyspace(), cql));
+        } catch (ExecutionException e) {
+            throw new SQLTransientException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw new SQLTransientException(e.getCause());
+        }
+    }
+
+    CacheStats preparedStatementStats() {
+        return preparedStatements.stats();
     }
 
     /**
@@ -101,14 +192,21 @@ class SessionHolder {
         int newRef;
         while (true) {
             int ref = references.get();
-            // We set to -1 after the last release, to distinguish it from the initial state
-            newRef = (ref == 1) ? -1 : ref - 1;
+            // We set to -1 after the last release, to distinguish it from the initial state, unless
+            // the session stays open until its idle timeout
+            newRef = (ref == 1 && idleTimeoutMillis <= 0) ? -1 : ref - 1;
             if (references.compareAndSet(ref, newRef))
                 break;
         }
         if (newRef == -1) {
             logger.debug("Released last reference to {}, closing Session", cacheKey.get(URL_KEY));
             dispose();
+        } else if (newRef == 0) {
+            logger.debug("Released last reference to {}, closing Session if idle for {} ms",
+                    cacheKey.get(URL_KEY), idleTimeoutMillis);
+            idleSince = System.nanoTime();
+            idleSessions.add(this);
+            startEvictor();
         } else {
             logger.debug("Released reference to {}, new count = {}", cacheKey.get(URL_KEY), newRef);
         }
@@ -129,6 +227,8 @@ class SessionHolder {
                 return false;
             }
             if (references.compareAndSet(ref, ref + 1)) {
+                if (ref == 0)
+                    idleSessions.remove(this);
                 logger.debug("Acquired reference to {}, new count = {}", cacheKey.get(URL_KEY),
                         ref + 1);
                 return true;
@@ -136,171 +236,59 @@ class SessionHolder {
         }
     }
 
-    @SuppressWarnings("resource")
-    private Session createSession(Properties properties) throws SQLException {
-        String hosts = properties.getProperty(TAG_SERVER_NAME);
-        int port = Integer.parseInt(properties.getProperty(TAG_PORT_NUMBER));
-        String keyspace = properties.getProperty(TAG_DATABASE_NAME);
-        String username = properties.getProperty(TAG_USER, "");
-        String password = properties.getProperty(TAG_PASSWORD, "");
-        String loadBalancingPolicy = properties.getProperty(TAG_LOADBALANCING_POLICY, "");
-        String retryPolicy = properties.getProperty(TAG_RETRY_POLICY, "");
-        String reconnectPolicy = properties.getProperty(TAG_RECONNECT_POLICY, "");
-        boolean debugMode = properties.getProperty(TAG_DEBUG, "").equals("true");
-        // SSL Options
-        String sslEnabledOption = properties.getProperty(TAG_SSL_ENABLED, "false");
-        boolean sslEnabled = isTrue(sslEnabledOption);
-        String verifyServerCertificateOption = properties.getProperty(TAG_VERIFY_SERVER_CERTIFICATE.
-                toLowerCase(), "false");
-        boolean verifyServerCertificate = isTrue(verifyServerCertificateOption);
-
-        Cluster.Builder builder = Cluster.builder();
-        builder.addContactPoints(hosts.split("--")).withPort(port);
-        if (sslEnabled && verifyServerCertificate) {
-            String keyStorePassword = properties.getProperty(KEY_STORE_PASSWORD, "");
-            String keyStoreUrl = properties.getProperty(KEY_STORE_URL, "");
-            String keyStoreFactory = properties.getProperty(KEY_STORE_FACTORY, "");
-            String trustStoreUrl = properties.getProperty(TRUST_STORE_URL, "");
-            String privateKeyAlias = properties.getProperty(KEY_ALIAS, "");
-            String privateKeyPassPhrase = properties.getProperty(PRIVATE_KEY_PASSPHRASE, "");
-            KeyStore keyStore = null;
-            KeyStore trustStore = null;
-            //Condition to check for custom Key Store Factory to Generate Key/Trust stores
-            if (!StringUtils.isEmpty(keyStoreFactory)) {
+    private static synchronized void startEvictor() {
+        if (evictor != null)
+            return;
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("cassandra-jdbc-session-evictor").setDaemon(true).build());
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
                 try {
-                    Class factory = Class.forName(keyStoreFactory);
-                    Method getKeyStoreMethod = factory.getDeclaredMethod(
-                            "getKeyStore", Properties.class);
-                    keyStore = (KeyStore) getKeyStoreMethod.invoke(null, properties);
-
-                    Method getTrustStoreMethod = factory.getDeclaredMethod(
-                            "getTrustStore", Properties.class);
-                    trustStore = (KeyStore) getTrustStoreMethod.invoke(null, properties);
-                } catch (ClassNotFoundException | NoSuchMethodException |
-                        IllegalAccessException | InvocationTargetException e) {
-                    //ignore this and proceed
-                    logger.warn("Error while creating Key/Trust store ", e);
-                    keyStore = null;
-                    trustStore = null;
+                    evictIdleSessions(System.nanoTime());
+                } catch (RuntimeException e) {
+                    logger.warn("Error while closing idle sessions", e);
                 }
             }
-            SSLContext context = null;
-            if (keyStore != null && trustStore != null) {
-                context = SSLUtil.getSSLContextFromKeyStore(keyStore, trustStore, privateKeyAlias,
-                        privateKeyPassPhrase);
-            } else {
-                // check keyStoreUrl
-                if (!StringUtils.isEmpty(keyStoreUrl)) {
-                    try {
-                        new URL(keyStoreUrl);
-                    } catch (MalformedURLException e) {
-                        keyStoreUrl = "file:" + keyStoreUrl;
-                    }
-                }
-                context = SSLUtil.getTrustEverybodySSLContext(keyStoreUrl, privateKeyAlias,
-                        privateKeyPassPhrase, keyStorePassword, trustStoreUrl);
-            }
-
-            SSLOptions options = RemoteEndpointAwareJdkSSLOptions.builder().withSSLContext(context)
-                    .build();
-            builder.withSSL(options);
-
-        } else {
-            builder.withSocketOptions(new SocketOptions().setKeepAlive(true));
-        }
-        // Set credentials when applicable
-        if (username.length() > 0) {
-            builder.withCredentials(username, password);
-        }
-
-        if (loadBalancingPolicy.length() > 0) {
-            // if load balancing policy has been given in the JDBC URL, parse it and add it to the
-            // cluster builder
-            try {
-                builder.withLoadBalancingPolicy(parseLbPolicy(loadBalancingPolicy));
-            } catch (Exception e) {
-                if (debugMode) {
-                    throw new SQLNonTransientConnectionException(e);
-                }
-                logger.warn("Error occurred while parsing load balancing policy :" + e.getMessage()
-                        + " / Forcing to TokenAwarePolicy...");
-                builder.withLoadBalancingPolicy(new TokenAwarePolicy(new RoundRobinPolicy()));
-            }
-        }
+        }, EVICTION_INTERVAL_MILLIS, EVICTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
-        if (retryPolicy.length() > 0) {
-            // if retry policy has been given in the JDBC URL, parse it and add it to the cluster
-            // builder
-            try {
-                builder.withRetryPolicy(parseRetryPolicy(retryPolicy));
-            } catch (Exception e) {
-                if (debugMode) {
-                    throw new SQLNonTransientConnectionException(e);
-                }
-                logger.warn("Error occured while parsing retry policy :" + e.getMessage()
-                        + " / skipping...");
-            }
+    /**
+     * Closes the sessions unused for longer than their idle timeout, but the most recently used
+     * ones that their minimum count of idle sessions keeps open.
+     */
+    static void evictIdleSessions(long now) {
+        List<SessionHolder> idle = new ArrayList<SessionHolder>();
+        for (SessionHolder holder : idleSessions) {
+            if (holder.references.get() == 0)
+                idle.add(holder);
         }
-
-        if (reconnectPolicy.length() > 0) {
-            // if reconnection policy has been given in the JDBC URL, parse it and add it to the
-            // cluster builder
-            try {
-                builder.withReconnectionPolicy(parseReconnectionPolicy(reconnectPolicy));
-            } catch (Exception e) {
-                if (debugMode) {
-                    throw new SQLNonTransientConnectionException(e);
-                }
-                logger.warn("Error occured while parsing reconnection policy :" + e.getMessage()
-                        + " / skipping...");
+        // most recently used first
+        Collections.sort(idle, new Comparator<SessionHolder>() {
+            public int compare(SessionHolder holder1, SessionHolder holder2) {
+                return Long.signum(holder2.idleSince - holder1.idleSince);
             }
-        }
-
-        // The codecs below were defined in the original code. We probably
-        // don't need all of them, however, a couple are necessary to run the
-        // tests, specifically these:
-        //
-        // NumericTypesUnitTest.testDecimalType [bigint <-> java.lang.Integer]
-        // JdbcRegressionUnitTest.testTimestampToLongCodec [timestamp <-> java.lang.Long]
-
-        // Declare and register codecs
-        List<TypeCodec<?>> codecs = new ArrayList<TypeCodec<?>>();
-        CodecRegistry customizedRegistry = new CodecRegistry();
-
-        codecs.add(new TimestampToLongCodec(Long.class));
-        codecs.add(new LongToIntCodec(Integer.class));
-        codecs.add(new IntToLongCodec(Long.class));
-        codecs.add(new BigDecimalToBigintCodec(BigDecimal.class));
-        codecs.add(new DoubleToDecimalCodec(Double.class));
-        codecs.add(new DoubleToFloatCodec(Double.class));
-        codecs.add(new UdtTypeCodec());
-        codecs.add(TypeCodec.list(new UdtTypeCodec()));
-        codecs.add(new ListCustomTypeCodec());
-
-        customizedRegistry.register(codecs);
-        builder.withCodecRegistry(customizedRegistry);
-        // end of codec register
-
-        Cluster cluster = null;
-        try {
-            cluster = builder.build();
-            return cluster.connect(keyspace);
-        } catch (DriverException e) {
-            if (cluster != null)
-                cluster.close();
-            throw new SQLNonTransientConnectionException(e);
+        });
+        int kept = 0;
+        for (SessionHolder holder : idle) {
+            boolean expired = now - holder.idleSince >= TimeUnit.MILLISECONDS
+                    .toNanos(holder.idleTimeoutMillis);
+            // a session used again in the meantime is not closed, and left to its connections
+            if (expired && kept >= holder.minIdleSessions
+                    && holder.references.compareAndSet(0, -1)) {
+                idleSessions.remove(holder);
+                logger.debug("Closing Session of {}, idle for {} ms", holder.cacheKey.get(URL_KEY),
+                        TimeUnit.NANOSECONDS.toMillis(now - holder.idleSince));
+                holder.dispose();
+            } else
+                kept++;
         }
     }
 
     private void dispose() {
-        // No one else has a reference to the parent Cluster, and only one Session was created from
-        // it:
-        session.getCluster().close();
+        // No one else has a reference to the Session, the Cluster may still be used by the
+        // sessions of other keyspaces
+        session.close();
+        clusterHolder.release();
         parentCache.invalidate(cacheKey);
     }
-
-    private boolean isTrue(String value) {
-        return value != null && (value.equals("1") || value.toLowerCase(Locale.ENGLISH)
-                .equals("true"));
-    }
 }
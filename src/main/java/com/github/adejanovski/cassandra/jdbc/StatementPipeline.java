@@ -0,0 +1,268 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Executes a sequence of statements asynchronously while keeping at most a fixed number of them
+ * in flight.
+ * <p>
+ * The first statements are submitted right away, then each completion submits the next one, so a
+ * script of any length runs at full throughput without sending everything to the coordinators at
+ * once. Statements are built lazily by a {@link StatementSource}, and their results are exposed in
+ * submission order, whatever the order in which they complete. A failing statement does not stop
+ * the others: failures are collected and reported together by {@link #await()}. Each result is
+ * released by the pipeline once it is read, so that the rows of a long script are not all kept
+ * until its end.
+ */
+final class StatementPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementPipeline.class);
+
+    static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    /**
+     * Builds the statements run by the pipeline, on demand.
+     */
+    interface StatementSource {
+        int size();
+
+        Statement get(int index) throws Exception;
+    }
+
+    private final Session session;
+    private final StatementSource source;
+    private final int size;
+    // the results not read yet, null once read
+    private final AtomicReferenceArray<SettableFuture<ResultSet>> results;
+    private final AtomicReferenceArray<ResultSetFuture> inFlight;
+
+    private final AtomicInteger permits;
+    // guards the submission loop: only the thread that moves it from 0 submits, the others just
+    // ask it to go around once more
+    private final AtomicInteger wip = new AtomicInteger();
+    private int next;
+    private volatile boolean cancelled;
+
+    StatementPipeline(Session session, StatementSource source, int maxInFlight) {
+        this.session = session;
+        this.source = source;
+        this.size = source.size();
+        this.permits = new AtomicInteger(Math.max(1, maxInFlight));
+        this.inFlight = new AtomicReferenceArray<ResultSetFuture>(size);
+        this.results = new AtomicReferenceArray<SettableFuture<ResultSet>>(size);
+        for (int i = 0; i < size; i++)
+            results.set(i, SettableFuture.<ResultSet> create());
+    }
+
+    /**
+     * Submits the first statements; the rest follow as the earlier ones complete.
+     *
+     * @return this pipeline
+     */
+    StatementPipeline start() {
+        drain();
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Waits for the result of the statement at the given index, in submission order, and releases
+     * it: each result can only be taken once.
+     *
+     * @return the result of the statement
+     * @throws ExecutionException if the statement failed
+     * @throws CancellationException if the pipeline was cancelled before the statement completed
+     */
+    ResultSet take(int index) throws ExecutionException {
+        try {
+            return Uninterruptibles.getUninterruptibly(results.get(index));
+        } finally {
+            results.set(index, null);
+        }
+    }
+
+    /**
+     * Waits for every statement to complete.
+     *
+     * @return the results in submission order
+     * @throws SQLTransientException if any statement failed, with one chained exception per
+     *             failure
+     */
+    List<ResultSet> await() throws SQLException {
+        List<ResultSet> rows = new ArrayList<ResultSet>(size);
+        List<SQLException> failures = null;
+        for (int i = 0; i < size; i++) {
+            try {
+                rows.add(take(i));
+            } catch (ExecutionException e) {
+                if (failures == null)
+                    failures = new ArrayList<SQLException>();
+                failures.add(new SQLTransientException(
+                        "Statement " + (i + 1) + " failed: " + e.getCause().getMessage(),
+                        e.getCause()));
+            }
+        }
+        if (failures != null)
+            throw failure(failures);
+        return rows;
+    }
+
+    /**
+     * Waits for every statement of a JDBC batch to complete.
+     *
+     * @param rowCount the count of rows of the batch
+     * @param rows the rows executed by each statement, null if each statement executes the row
+     *            of the same index
+     * @return the update counts of the rows
+     * @throws BatchUpdateException if some statements failed, with EXECUTE_FAILED as the update
+     *             count of their rows, and one chained exception per failed statement
+     */
+    int[] awaitUpdateCounts(int rowCount, int[][] rows) throws BatchUpdateException {
+        int[] counts = new int[rowCount];
+        List<SQLException> failures = null;
+        for (int i = 0; i < size; i++) {
+            int count = 1;
+            try {
+                take(i);
+            } catch (ExecutionException e) {
+                count = java.sql.Statement.EXECUTE_FAILED;
+                if (failures == null)
+                    failures = new ArrayList<SQLException>();
+                failures.add(new SQLTransientException(
+                        "Statement " + (i + 1) + " failed: " + e.getCause().getMessage(),
+                        e.getCause()));
+            }
+            if (rows == null) {
+                counts[i] = count;
+            } else {
+                for (int row : rows[i])
+                    counts[row] = count;
+            }
+        }
+
+        if (failures != null) {
+            BatchUpdateException e = new BatchUpdateException(failures.size() + " of " + size
+                    + " statements of the batch failed, first failure: "
+                    + failures.get(0).getMessage(), counts, failures.get(0).getCause());
+            for (SQLException failure : failures)
+                e.setNextException(failure);
+            throw e;
+        }
+        return counts;
+    }
+
+    /**
+     * Stops submitting statements and cancels the ones in flight.
+     */
+    void cancel() {
+        cancelled = true;
+        for (int i = 0; i < size; i++) {
+            ResultSetFuture future = inFlight.get(i);
+            if (future != null)
+                future.cancel(true);
+            SettableFuture<ResultSet> result = results.get(i);
+            if (result != null)
+                result.cancel(false);
+        }
+    }
+
+    private SQLTransientException failure(List<SQLException> failures) {
+        SQLException first = failures.get(0);
+        SQLTransientException e = new SQLTransientException(
+                failures.size() + " of " + size + " statements failed, first failure: "
+                        + first.getMessage(),
+                first.getCause());
+        for (SQLException failure : failures)
+            e.setNextException(failure);
+        return e;
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0)
+            return;
+        do {
+            while (!cancelled && next < size && permits.get() > 0) {
+                permits.decrementAndGet();
+                submit(next++);
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private void submit(final int index) {
+        final SettableFuture<ResultSet> result = results.get(index);
+        if (result == null) {
+            // taken once the pipeline was cancelled
+            permits.incrementAndGet();
+            return;
+        }
+        final ResultSetFuture future;
+        try {
+            future = session.executeAsync(source.get(index));
+        } catch (Exception e) {
+            result.setException(e);
+            permits.incrementAndGet();
+            return;
+        }
+        inFlight.set(index, future);
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet rows) {
+                result.set(rows);
+                complete(index);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (logger.isDebugEnabled())
+                    logger.debug("Statement {} of {} failed", index + 1, size, t);
+                result.setException(t);
+                complete(index);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void complete(int index) {
+        inFlight.set(index, null);
+        permits.incrementAndGet();
+        // callbacks may run on the submitting thread, drain() then loops instead of recursing
+        drain();
+    }
+}
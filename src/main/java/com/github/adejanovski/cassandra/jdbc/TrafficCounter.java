@@ -0,0 +1,179 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.datastax.driver.core.NettyOptions;
+import com.datastax.driver.core.ProtocolOptions.Compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.SocketChannel;
+
+/**
+ * Counts the bytes of the frames exchanged with the cluster by a session, as they go on the wire
+ * and as they were before compression.
+ * <p>
+ * The bytes are counted under the TLS layer if any, right where the driver cuts them into frames.
+ * The size of a compressed frame before compression is read from the start of its body, where
+ * both LZ4 and Snappy write it, so frames are never decompressed twice.
+ */
+final class TrafficCounter extends NettyOptions {
+
+    // where the driver decodes the frames of a connection
+    private static final String FRAME_DECODER = "frameDecoder";
+
+    final Compression compression;
+
+    final AtomicLong bytesReceived = new AtomicLong();
+    final AtomicLong uncompressedBytesReceived = new AtomicLong();
+    final AtomicLong bytesSent = new AtomicLong();
+    final AtomicLong uncompressedBytesSent = new AtomicLong();
+
+    TrafficCounter(Compression compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    public void afterChannelInitialized(SocketChannel channel) throws Exception {
+        channel.pipeline().addBefore(FRAME_DECODER, "trafficCounter", new Handler());
+    }
+
+    /**
+     * Counts the frames of both directions of a connection.
+     */
+    private final class Handler extends ChannelDuplexHandler {
+
+        private final FrameStream in = new FrameStream(compression, bytesReceived,
+                uncompressedBytesReceived);
+        private final FrameStream out = new FrameStream(compression, bytesSent,
+                uncompressedBytesSent);
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof ByteBuf)
+                in.count((ByteBuf) msg);
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+                throws Exception {
+            if (msg instanceof ByteBuf)
+                out.count((ByteBuf) msg);
+            ctx.write(msg, promise);
+        }
+    }
+
+    /**
+     * Follows the frames of one direction of a connection through the chunks they come in,
+     * counting their bytes.
+     */
+    static final class FrameStream {
+
+        private static final int HEADER = 0;
+        private static final int SIZE = 1;
+        private static final int BODY = 2;
+
+        private final Compression compression;
+        private final AtomicLong bytes;
+        private final AtomicLong uncompressedBytes;
+
+        private int state = HEADER;
+        // header of protocol v1 and v2 frames is 8 bytes, 9 from v3 on
+        private final byte[] header = new byte[9];
+        private int headerSize;
+        private int headerRead;
+        // size before compression at the start of a compressed body
+        private int size;
+        private int sizeRead;
+        private int bodyLeft;
+
+        FrameStream(Compression compression, AtomicLong bytes, AtomicLong uncompressedBytes) {
+            this.compression = compression;
+            this.bytes = bytes;
+            this.uncompressedBytes = uncompressedBytes;
+        }
+
+        void count(ByteBuf chunk) {
+            int i = chunk.readerIndex();
+            int end = chunk.writerIndex();
+            bytes.addAndGet(end - i);
+            while (i < end) {
+                switch (state) {
+                    case HEADER:
+                        if (headerRead == 0)
+                            headerSize = (chunk.getByte(i) & 0x7f) < 3 ? 8 : 9;
+                        header[headerRead++] = chunk.getByte(i++);
+                        if (headerRead == headerSize)
+                            startBody();
+                        break;
+                    case SIZE:
+                        readSize(chunk.getByte(i++));
+                        if (--bodyLeft == 0)
+                            state = HEADER;
+                        break;
+                    default:
+                        int skipped = Math.min(bodyLeft, end - i);
+                        i += skipped;
+                        bodyLeft -= skipped;
+                        if (bodyLeft == 0)
+                            state = HEADER;
+                }
+            }
+        }
+
+        private void startBody() {
+            headerRead = 0;
+            bodyLeft = ((header[headerSize - 4] & 0xff) << 24)
+                    | ((header[headerSize - 3] & 0xff) << 16)
+                    | ((header[headerSize - 2] & 0xff) << 8) | (header[headerSize - 1] & 0xff);
+            uncompressedBytes.addAndGet(headerSize);
+            boolean compressed = (header[1] & 0x01) != 0 && compression != Compression.NONE;
+            if (!compressed)
+                uncompressedBytes.addAndGet(bodyLeft);
+            if (bodyLeft == 0)
+                state = HEADER;
+            else if (compressed) {
+                size = 0;
+                sizeRead = 0;
+                state = SIZE;
+            } else
+                state = BODY;
+        }
+
+        /**
+         * Reads a byte of the size before compression: a big endian int for LZ4, a little endian
+         * varint for Snappy.
+         */
+        private void readSize(byte b) {
+            boolean done;
+            if (compression == Compression.LZ4) {
+                size = (size << 8) | (b & 0xff);
+                done = ++sizeRead == 4;
+            } else {
+                size |= (b & 0x7f) << (7 * sizeRead++);
+                done = (b & 0x80) == 0 || sizeRead == 5;
+            }
+            if (done) {
+                uncompressedBytes.addAndGet(size);
+                state = BODY;
+            }
+        }
+    }
+}
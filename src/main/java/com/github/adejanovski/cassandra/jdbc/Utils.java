@@ -29,6 +29,7 @@ import java.nio.ByteBuffer;
 import java.sql.Date;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLNonTransientException;
 import java.sql.SQLSyntaxErrorException;
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -45,9 +46,12 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
@@ -57,6 +61,10 @@ import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.SocketOptions;
 import com.datastax.driver.core.policies.LatencyAwarePolicy;
 import com.datastax.driver.core.policies.LatencyAwarePolicy.Builder;
 import com.datastax.driver.core.policies.LoadBalancingPolicy;
@@ -91,6 +99,41 @@ public class Utils {
     public static final String KEY_RETRY_POLICY = "retry";
     public static final String KEY_RECONNECT_POLICY = "reconnection";
     public static final String KEY_DEBUG = "debug";
+    public static final String KEY_MAX_IN_FLIGHT = "maxinflight";
+    public static final String KEY_AUTO_PREPARE = "autoprepare";
+    public static final String KEY_AUTO_PREPARE_THRESHOLD = "autopreparethreshold";
+    public static final String KEY_AUTO_PREPARE_CACHE_SIZE = "autopreparecachesize";
+    public static final String KEY_PREPARED_CACHE_SIZE = "preparedcachesize";
+    public static final String KEY_UNSET_UNBOUND_PARAMETERS = "unsetunboundparameters";
+    public static final String KEY_BATCH_BY_PARTITION = "batchbypartition";
+    public static final String KEY_BATCH_MAX_STATEMENTS = "batchmaxstatements";
+    public static final String KEY_BATCH_MAX_BYTES = "batchmaxbytes";
+    public static final String KEY_PREFETCH_THRESHOLD = "prefetchthreshold";
+    public static final String KEY_ADAPTIVE_FETCH_SIZE = "adaptivefetchsize";
+    public static final String KEY_TARGET_PAGE_BYTES = "targetpagebytes";
+    public static final String KEY_PAGE_LATENCY_BUDGET = "pagelatencybudget";
+    public static final String KEY_MIN_FETCH_SIZE = "minfetchsize";
+    public static final String KEY_MAX_FETCH_SIZE = "maxfetchsize";
+    public static final String KEY_SPILL_THRESHOLD = "spillthreshold";
+    public static final String KEY_COLLECTIONS = "collections";
+    public static final String KEY_COMPRESSION = "compression";
+    public static final String KEY_SESSION_IDLE_TIMEOUT = "sessionidletimeout";
+    public static final String KEY_MIN_IDLE_SESSIONS = "minidlesessions";
+    public static final String KEY_CORE_CONNECTIONS_PER_HOST = "coreconnectionsperhost";
+    public static final String KEY_MAX_CONNECTIONS_PER_HOST = "maxconnectionsperhost";
+    public static final String KEY_MAX_REQUESTS_PER_CONNECTION = "maxrequestsperconnection";
+    public static final String KEY_REMOTE_CORE_CONNECTIONS_PER_HOST = "remotecoreconnectionsperhost";
+    public static final String KEY_REMOTE_MAX_CONNECTIONS_PER_HOST = "remotemaxconnectionsperhost";
+    public static final String KEY_REMOTE_MAX_REQUESTS_PER_CONNECTION = "remotemaxrequestsperconnection";
+    public static final String KEY_HEARTBEAT_INTERVAL = "heartbeatinterval";
+    public static final String KEY_POOL_TIMEOUT = "pooltimeout";
+    public static final String KEY_MAX_QUEUE_SIZE = "maxqueuesize";
+    public static final String KEY_CONNECT_TIMEOUT = "connecttimeout";
+    public static final String KEY_READ_TIMEOUT = "readtimeout";
+    public static final String KEY_KEEP_ALIVE = "keepalive";
+    public static final String KEY_TCP_NO_DELAY = "tcpnodelay";
+    public static final String KEY_RECEIVE_BUFFER_SIZE = "receivebuffersize";
+    public static final String KEY_SEND_BUFFER_SIZE = "sendbuffersize";
     public static final String KEY_SSL_ENABLED = "sslenabled";
     public static final String KEY_VERIFY_SERVER_CERTIFICATE = "verifyservercertificate";
     public static final String KEY_STORE_URL = "keyStore";
@@ -116,6 +159,41 @@ public class Utils {
     public static final String TAG_RETRY_POLICY = "retry";
     public static final String TAG_RECONNECT_POLICY = "reconnection";
     public static final String TAG_DEBUG = "debug";
+    public static final String TAG_MAX_IN_FLIGHT = "maxInFlight";
+    public static final String TAG_AUTO_PREPARE = "autoPrepare";
+    public static final String TAG_AUTO_PREPARE_THRESHOLD = "autoPrepareThreshold";
+    public static final String TAG_AUTO_PREPARE_CACHE_SIZE = "autoPrepareCacheSize";
+    public static final String TAG_PREPARED_CACHE_SIZE = "preparedCacheSize";
+    public static final String TAG_UNSET_UNBOUND_PARAMETERS = "unsetUnboundParameters";
+    public static final String TAG_BATCH_BY_PARTITION = "batchByPartition";
+    public static final String TAG_BATCH_MAX_STATEMENTS = "batchMaxStatements";
+    public static final String TAG_BATCH_MAX_BYTES = "batchMaxBytes";
+    public static final String TAG_PREFETCH_THRESHOLD = "prefetchThreshold";
+    public static final String TAG_ADAPTIVE_FETCH_SIZE = "adaptiveFetchSize";
+    public static final String TAG_TARGET_PAGE_BYTES = "targetPageBytes";
+    public static final String TAG_PAGE_LATENCY_BUDGET = "pageLatencyBudget";
+    public static final String TAG_MIN_FETCH_SIZE = "minFetchSize";
+    public static final String TAG_MAX_FETCH_SIZE = "maxFetchSize";
+    public static final String TAG_SPILL_THRESHOLD = "spillThreshold";
+    public static final String TAG_COLLECTIONS = "collections";
+    public static final String TAG_COMPRESSION = "compression";
+    public static final String TAG_SESSION_IDLE_TIMEOUT = "sessionIdleTimeout";
+    public static final String TAG_MIN_IDLE_SESSIONS = "minIdleSessions";
+    public static final String TAG_CORE_CONNECTIONS_PER_HOST = "coreConnectionsPerHost";
+    public static final String TAG_MAX_CONNECTIONS_PER_HOST = "maxConnectionsPerHost";
+    public static final String TAG_MAX_REQUESTS_PER_CONNECTION = "maxRequestsPerConnection";
+    public static final String TAG_REMOTE_CORE_CONNECTIONS_PER_HOST = "remoteCoreConnectionsPerHost";
+    public static final String TAG_REMOTE_MAX_CONNECTIONS_PER_HOST = "remoteMaxConnectionsPerHost";
+    public static final String TAG_REMOTE_MAX_REQUESTS_PER_CONNECTION = "remoteMaxRequestsPerConnection";
+    public static final String TAG_HEARTBEAT_INTERVAL = "heartbeatInterval";
+    public static final String TAG_POOL_TIMEOUT = "poolTimeout";
+    public static final String TAG_MAX_QUEUE_SIZE = "maxQueueSize";
+    public static final String TAG_CONNECT_TIMEOUT = "connectTimeout";
+    public static final String TAG_READ_TIMEOUT = "readTimeout";
+    public static final String TAG_KEEP_ALIVE = "keepAlive";
+    public static final String TAG_TCP_NO_DELAY = "tcpNoDelay";
+    public static final String TAG_RECEIVE_BUFFER_SIZE = "receiveBufferSize";
+    public static final String TAG_SEND_BUFFER_SIZE = "sendBufferSize";
     public static final String TAG_SSL_ENABLED = "sslenabled";
     public static final String TAG_VERIFY_SERVER_CERTIFICATE = "verifyServerCertificate";
 
@@ -161,6 +239,8 @@ public class Utils {
     protected static final String BAD_DATE_FORMAT = "invalid date format - expected 'yyyy-mm-dd'";
     protected static final String BAD_TIME_FORMAT = "invalid time format - expected 'hh:mm:ss'";
     protected static final String BAD_TIMESTAMP_FORMAT = "invalid timestamp format - expected 'yyyy-mm-dd hh:mm:ss'";
+    protected static final String BAD_PAGING_STATE = "invalid paging state, or paging state of another query";
+    protected static final String NO_MULTIPLE_PAGING_STATE = "a paging state can only resume a query of a single statement";
 
     // ISO-8601 patterns
     // @formatter:off
@@ -267,6 +347,122 @@ public class Utils {
                 if (params.containsKey(KEY_SSL_ENABLED)) {
                     props.setProperty(KEY_SSL_ENABLED, params.get(KEY_SSL_ENABLED));
                 }
+                if (params.containsKey(KEY_MAX_IN_FLIGHT)) {
+                    props.setProperty(TAG_MAX_IN_FLIGHT, params.get(KEY_MAX_IN_FLIGHT));
+                }
+                if (params.containsKey(KEY_AUTO_PREPARE)) {
+                    props.setProperty(TAG_AUTO_PREPARE, params.get(KEY_AUTO_PREPARE));
+                }
+                if (params.containsKey(KEY_AUTO_PREPARE_THRESHOLD)) {
+                    props.setProperty(TAG_AUTO_PREPARE_THRESHOLD,
+                            params.get(KEY_AUTO_PREPARE_THRESHOLD));
+                }
+                if (params.containsKey(KEY_AUTO_PREPARE_CACHE_SIZE)) {
+                    props.setProperty(TAG_AUTO_PREPARE_CACHE_SIZE,
+                            params.get(KEY_AUTO_PREPARE_CACHE_SIZE));
+                }
+                if (params.containsKey(KEY_PREPARED_CACHE_SIZE)) {
+                    props.setProperty(TAG_PREPARED_CACHE_SIZE, params.get(KEY_PREPARED_CACHE_SIZE));
+                }
+                if (params.containsKey(KEY_UNSET_UNBOUND_PARAMETERS)) {
+                    props.setProperty(TAG_UNSET_UNBOUND_PARAMETERS,
+                            params.get(KEY_UNSET_UNBOUND_PARAMETERS));
+                }
+                if (params.containsKey(KEY_BATCH_BY_PARTITION)) {
+                    props.setProperty(TAG_BATCH_BY_PARTITION, params.get(KEY_BATCH_BY_PARTITION));
+                }
+                if (params.containsKey(KEY_BATCH_MAX_STATEMENTS)) {
+                    props.setProperty(TAG_BATCH_MAX_STATEMENTS,
+                            params.get(KEY_BATCH_MAX_STATEMENTS));
+                }
+                if (params.containsKey(KEY_BATCH_MAX_BYTES)) {
+                    props.setProperty(TAG_BATCH_MAX_BYTES, params.get(KEY_BATCH_MAX_BYTES));
+                }
+                if (params.containsKey(KEY_PREFETCH_THRESHOLD)) {
+                    props.setProperty(TAG_PREFETCH_THRESHOLD, params.get(KEY_PREFETCH_THRESHOLD));
+                }
+                if (params.containsKey(KEY_ADAPTIVE_FETCH_SIZE)) {
+                    props.setProperty(TAG_ADAPTIVE_FETCH_SIZE, params.get(KEY_ADAPTIVE_FETCH_SIZE));
+                }
+                if (params.containsKey(KEY_TARGET_PAGE_BYTES)) {
+                    props.setProperty(TAG_TARGET_PAGE_BYTES, params.get(KEY_TARGET_PAGE_BYTES));
+                }
+                if (params.containsKey(KEY_PAGE_LATENCY_BUDGET)) {
+                    props.setProperty(TAG_PAGE_LATENCY_BUDGET, params.get(KEY_PAGE_LATENCY_BUDGET));
+                }
+                if (params.containsKey(KEY_MIN_FETCH_SIZE)) {
+                    props.setProperty(TAG_MIN_FETCH_SIZE, params.get(KEY_MIN_FETCH_SIZE));
+                }
+                if (params.containsKey(KEY_MAX_FETCH_SIZE)) {
+                    props.setProperty(TAG_MAX_FETCH_SIZE, params.get(KEY_MAX_FETCH_SIZE));
+                }
+                if (params.containsKey(KEY_SPILL_THRESHOLD)) {
+                    props.setProperty(TAG_SPILL_THRESHOLD, params.get(KEY_SPILL_THRESHOLD));
+                }
+                if (params.containsKey(KEY_COLLECTIONS)) {
+                    props.setProperty(TAG_COLLECTIONS, params.get(KEY_COLLECTIONS));
+                }
+                if (params.containsKey(KEY_COMPRESSION)) {
+                    props.setProperty(TAG_COMPRESSION, params.get(KEY_COMPRESSION));
+                }
+                if (params.containsKey(KEY_SESSION_IDLE_TIMEOUT)) {
+                    props.setProperty(TAG_SESSION_IDLE_TIMEOUT,
+                            params.get(KEY_SESSION_IDLE_TIMEOUT));
+                }
+                if (params.containsKey(KEY_MIN_IDLE_SESSIONS)) {
+                    props.setProperty(TAG_MIN_IDLE_SESSIONS, params.get(KEY_MIN_IDLE_SESSIONS));
+                }
+                if (params.containsKey(KEY_CORE_CONNECTIONS_PER_HOST)) {
+                    props.setProperty(TAG_CORE_CONNECTIONS_PER_HOST,
+                            params.get(KEY_CORE_CONNECTIONS_PER_HOST));
+                }
+                if (params.containsKey(KEY_MAX_CONNECTIONS_PER_HOST)) {
+                    props.setProperty(TAG_MAX_CONNECTIONS_PER_HOST,
+                            params.get(KEY_MAX_CONNECTIONS_PER_HOST));
+                }
+                if (params.containsKey(KEY_MAX_REQUESTS_PER_CONNECTION)) {
+                    props.setProperty(TAG_MAX_REQUESTS_PER_CONNECTION,
+                            params.get(KEY_MAX_REQUESTS_PER_CONNECTION));
+                }
+                if (params.containsKey(KEY_REMOTE_CORE_CONNECTIONS_PER_HOST)) {
+                    props.setProperty(TAG_REMOTE_CORE_CONNECTIONS_PER_HOST,
+                            params.get(KEY_REMOTE_CORE_CONNECTIONS_PER_HOST));
+                }
+                if (params.containsKey(KEY_REMOTE_MAX_CONNECTIONS_PER_HOST)) {
+                    props.setProperty(TAG_REMOTE_MAX_CONNECTIONS_PER_HOST,
+                            params.get(KEY_REMOTE_MAX_CONNECTIONS_PER_HOST));
+                }
+                if (params.containsKey(KEY_REMOTE_MAX_REQUESTS_PER_CONNECTION)) {
+                    props.setProperty(TAG_REMOTE_MAX_REQUESTS_PER_CONNECTION,
+                            params.get(KEY_REMOTE_MAX_REQUESTS_PER_CONNECTION));
+                }
+                if (params.containsKey(KEY_HEARTBEAT_INTERVAL)) {
+                    props.setProperty(TAG_HEARTBEAT_INTERVAL, params.get(KEY_HEARTBEAT_INTERVAL));
+                }
+                if (params.containsKey(KEY_POOL_TIMEOUT)) {
+                    props.setProperty(TAG_POOL_TIMEOUT, params.get(KEY_POOL_TIMEOUT));
+                }
+                if (params.containsKey(KEY_MAX_QUEUE_SIZE)) {
+                    props.setProperty(TAG_MAX_QUEUE_SIZE, params.get(KEY_MAX_QUEUE_SIZE));
+                }
+                if (params.containsKey(KEY_CONNECT_TIMEOUT)) {
+                    props.setProperty(TAG_CONNECT_TIMEOUT, params.get(KEY_CONNECT_TIMEOUT));
+                }
+                if (params.containsKey(KEY_READ_TIMEOUT)) {
+                    props.setProperty(TAG_READ_TIMEOUT, params.get(KEY_READ_TIMEOUT));
+                }
+                if (params.containsKey(KEY_KEEP_ALIVE)) {
+                    props.setProperty(TAG_KEEP_ALIVE, params.get(KEY_KEEP_ALIVE));
+                }
+                if (params.containsKey(KEY_TCP_NO_DELAY)) {
+                    props.setProperty(TAG_TCP_NO_DELAY, params.get(KEY_TCP_NO_DELAY));
+                }
+                if (params.containsKey(KEY_RECEIVE_BUFFER_SIZE)) {
+                    props.setProperty(TAG_RECEIVE_BUFFER_SIZE, params.get(KEY_RECEIVE_BUFFER_SIZE));
+                }
+                if (params.containsKey(KEY_SEND_BUFFER_SIZE)) {
+                    props.setProperty(TAG_SEND_BUFFER_SIZE, params.get(KEY_SEND_BUFFER_SIZE));
+                }
 
             }
         }
@@ -870,6 +1066,146 @@ public class Utils {
         return policy;
     }
 
+    /**
+     * @return the pooling options given by the properties, the defaults of the driver for the
+     *         others
+     */
+    public static PoolingOptions parsePoolingOptions(Properties properties) throws SQLException {
+        PoolingOptions options = new PoolingOptions();
+        try {
+            setConnectionsPerHost(options, HostDistance.LOCAL,
+                    intOption(properties, TAG_CORE_CONNECTIONS_PER_HOST),
+                    intOption(properties, TAG_MAX_CONNECTIONS_PER_HOST));
+            setConnectionsPerHost(options, HostDistance.REMOTE,
+                    intOption(properties, TAG_REMOTE_CORE_CONNECTIONS_PER_HOST),
+                    intOption(properties, TAG_REMOTE_MAX_CONNECTIONS_PER_HOST));
+            Integer value = intOption(properties, TAG_MAX_REQUESTS_PER_CONNECTION);
+            if (value != null)
+                options.setMaxRequestsPerConnection(HostDistance.LOCAL, value);
+            value = intOption(properties, TAG_REMOTE_MAX_REQUESTS_PER_CONNECTION);
+            if (value != null)
+                options.setMaxRequestsPerConnection(HostDistance.REMOTE, value);
+            value = intOption(properties, TAG_HEARTBEAT_INTERVAL);
+            if (value != null)
+                options.setHeartbeatIntervalSeconds(value);
+            value = intOption(properties, TAG_POOL_TIMEOUT);
+            if (value != null)
+                options.setPoolTimeoutMillis(value);
+            value = intOption(properties, TAG_MAX_QUEUE_SIZE);
+            if (value != null)
+                options.setMaxQueueSize(value);
+        } catch (IllegalArgumentException e) {
+            throw new SQLNonTransientConnectionException(e.getMessage(), e);
+        }
+        return options;
+    }
+
+    private static void setConnectionsPerHost(PoolingOptions options, HostDistance distance,
+            Integer core, Integer max) {
+        if (core != null && max != null)
+            options.setConnectionsPerHost(distance, core, max);
+        else if (core != null)
+            options.setCoreConnectionsPerHost(distance, core);
+        else if (max != null)
+            options.setMaxConnectionsPerHost(distance, max);
+    }
+
+    /**
+     * @return the socket options given by the properties, with keep alive on unless turned off
+     */
+    public static SocketOptions parseSocketOptions(Properties properties) throws SQLException {
+        SocketOptions options = new SocketOptions();
+        options.setKeepAlive(booleanOption(properties, TAG_KEEP_ALIVE, true));
+        if (properties.getProperty(TAG_TCP_NO_DELAY) != null)
+            options.setTcpNoDelay(booleanOption(properties, TAG_TCP_NO_DELAY, false));
+        try {
+            Integer value = intOption(properties, TAG_CONNECT_TIMEOUT);
+            if (value != null)
+                options.setConnectTimeoutMillis(value);
+            value = intOption(properties, TAG_READ_TIMEOUT);
+            if (value != null)
+                options.setReadTimeoutMillis(value);
+            value = intOption(properties, TAG_RECEIVE_BUFFER_SIZE);
+            if (value != null)
+                options.setReceiveBufferSize(value);
+            value = intOption(properties, TAG_SEND_BUFFER_SIZE);
+            if (value != null)
+                options.setSendBufferSize(value);
+        } catch (IllegalArgumentException e) {
+            throw new SQLNonTransientConnectionException(e.getMessage(), e);
+        }
+        return options;
+    }
+
+    /**
+     * @return the value of an integer property, null if it is not set
+     */
+    private static Integer intOption(Properties properties, String tag) throws SQLException {
+        String value = properties.getProperty(tag);
+        if (value == null)
+            return null;
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SQLNonTransientConnectionException(
+                    "invalid value for " + tag + ": " + value + ", expected an integer");
+        }
+    }
+
+    /**
+     * @return the value of an integer property, the default value if it is not set
+     */
+    static int intOption(Properties properties, String tag, int defaultValue)
+            throws SQLException {
+        Integer value = intOption(properties, tag);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * @return whether a boolean property is true, given as true in any case or 1, the default
+     *         value if it is not set
+     */
+    static boolean booleanOption(Properties properties, String tag, boolean defaultValue) {
+        String value = properties.getProperty(tag);
+        if (value == null)
+            return defaultValue;
+        value = value.trim();
+        return value.equals("1") || value.equalsIgnoreCase("true");
+    }
+
+    /**
+     * @return the constant named by an enum property, in any case, the default value if it is
+     *         not set
+     */
+    static <E extends Enum<E>> E enumOption(Properties properties, String tag, Class<E> type,
+            E defaultValue) throws SQLException {
+        String value = properties.getProperty(tag);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new SQLNonTransientConnectionException("invalid value for " + tag + ": "
+                    + value + ", expected one of " + Arrays.toString(type.getEnumConstants()));
+        }
+    }
+
+    /**
+     * @return the value of a long integer property, the default value if it is not set
+     */
+    static long longOption(Properties properties, String tag, long defaultValue)
+            throws SQLException {
+        String value = properties.getProperty(tag);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SQLNonTransientConnectionException(
+                    "invalid value for " + tag + ": " + value + ", expected an integer");
+        }
+    }
+
     /**
      * Convert string to java.sql.Date
      *
@@ -1006,4 +1342,31 @@ public class Utils {
         }
         return (new SimpleDateFormat(TIMESTAMP_FORMAT)).format(value);
     }
+
+    /**
+     * Convert a driver paging state to an opaque token, safe in URLs
+     */
+    public static String formatPagingState(PagingState value) {
+        if (value == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toBytes());
+    }
+
+    /**
+     * Convert a token from {@link #formatPagingState(PagingState)} back to a driver paging state
+     *
+     * @throws SQLNonTransientException if the token is not a paging state
+     */
+    public static PagingState parsePagingState(String value) throws SQLException {
+        if ((value == null) || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return PagingState.fromBytes(Base64.getUrlDecoder().decode(value));
+        } catch (RuntimeException e) {
+            // not base64, or not the layout of a paging state
+            throw new SQLNonTransientException(BAD_PAGING_STATE, e);
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.CodecNotFoundException;
+
+/**
+ * Converts the values given to the setXXX methods of a {@link CassandraPreparedStatement} to the
+ * CQL type of one variable.
+ * <p>
+ * The binders are chosen once per variable when the CQL is prepared, from the variable
+ * definitions returned by the server, so that binding a value never has to find out the type of
+ * its column by trial and error.
+ */
+class VariableBinder {
+
+    final DataType type;
+
+    /** the codec of the CQL type, or null if none is registered for it */
+    private final TypeCodec<Object> codec;
+
+    VariableBinder(DataType type, TypeCodec<Object> codec) {
+        this.type = type;
+        this.codec = codec;
+    }
+
+    /**
+     * @return one binder per variable, in the order of the variables
+     */
+    static VariableBinder[] of(ColumnDefinitions variables, CodecRegistry codecRegistry) {
+        VariableBinder[] binders = new VariableBinder[variables.size()];
+        for (int i = 0; i < binders.length; i++)
+            binders[i] = of(variables.getType(i), codecRegistry);
+        return binders;
+    }
+
+    static VariableBinder of(DataType type, CodecRegistry codecRegistry) {
+        TypeCodec<Object> codec;
+        try {
+            codec = codecRegistry.codecFor(type);
+        } catch (CodecNotFoundException e) {
+            // custom types, the values can still be bound with the typed setters
+            codec = null;
+        }
+
+        switch (type.getName()) {
+            case BIGINT:
+            case COUNTER:
+                return new VariableBinder(type, codec) {
+                    @Override
+                    void bindInt(BoundStatement statement, int i, int value) {
+                        statement.setLong(i, value);
+                    }
+                };
+            case VARINT:
+                return new VariableBinder(type, codec) {
+                    @Override
+                    void bindInt(BoundStatement statement, int i, int value) {
+                        statement.setVarint(i, BigInteger.valueOf(value));
+                    }
+
+                    @Override
+                    void bindLong(BoundStatement statement, int i, long value) {
+                        statement.setVarint(i, BigInteger.valueOf(value));
+                    }
+                };
+            case SMALLINT:
+                return new VariableBinder(type, codec) {
+                    @Override
+                    void bindInt(BoundStatement statement, int i, int value) {
+                        statement.setShort(i, (short) value);
+                    }
+                };
+            case TINYINT:
+                return new VariableBinder(type, codec) {
+                    @Override
+                    void bindInt(BoundStatement statement, int i, int value) {
+                        statement.setByte(i, (byte) value);
+                    }
+                };
+            case SET:
+            case LIST:
+                final String itemType = type.getTypeArguments().get(0).toString();
+                final boolean set = type.getName() == DataType.Name.SET;
+                return new VariableBinder(type, codec) {
+                    @Override
+                    void bindString(BoundStatement statement, int i, String value)
+                            throws SQLException {
+                        // the string representation of the collection, as given by toString()
+                        if (value == null)
+                            statement.setToNull(i);
+                        else if (set)
+                            statement.setSet(i, Utils.parseSet(itemType, value));
+                        else
+                            statement.setList(i, Utils.parseList(itemType, value));
+                    }
+                };
+            case MAP:
+                List<DataType> kvTypes = type.getTypeArguments();
+                final String keyType = kvTypes.get(0).toString();
+                final String valueType = kvTypes.get(1).toString();
+                return new VariableBinder(type, codec) {
+                    @Override
+                    void bindString(BoundStatement statement, int i, String value)
+                            throws SQLException {
+                        if (value == null)
+                            statement.setToNull(i);
+                        else
+                            statement.setMap(i, Utils.parseMap(keyType, valueType, value));
+                    }
+                };
+            default:
+                return new VariableBinder(type, codec);
+        }
+    }
+
+    void bindInt(BoundStatement statement, int i, int value) {
+        statement.setInt(i, value);
+    }
+
+    void bindLong(BoundStatement statement, int i, long value) {
+        statement.setLong(i, value);
+    }
+
+    void bindString(BoundStatement statement, int i, String value) throws SQLException {
+        statement.setString(i, value);
+    }
+
+    /**
+     * Binds a value that already has the Java type of the CQL type.
+     *
+     * @return false if the value does not have the Java type of the CQL type, and has to be
+     *         converted first
+     */
+    boolean bindObject(BoundStatement statement, int i, Object value) {
+        if (codec == null || !codec.accepts(value))
+            return false;
+        statement.set(i, value, codec);
+        return true;
+    }
+}
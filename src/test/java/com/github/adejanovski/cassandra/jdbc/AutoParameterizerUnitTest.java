@@ -0,0 +1,118 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TypeCodec;
+import com.google.common.util.concurrent.Futures;
+
+public class AutoParameterizerUnitTest {
+
+    @Test
+    public void testShape() throws Exception {
+        AutoParameterizer.Shape shape = AutoParameterizer.Shape
+                .of("SELECT a, 'x' FROM t  WHERE k = 'it''s'\n AND c >= -12.5 LIMIT 10;");
+        assertEquals(shape.cql, "SELECT a, 'x' FROM t WHERE k = ? AND c >= ? LIMIT ?");
+        assertEquals(shape.literals, Arrays.asList("'it''s'", "-12.5", "10"));
+
+        shape = AutoParameterizer.Shape.of("insert into t (k, v, b, u) /* comment */ values "
+                + "(1, $$a'b$$, 0xcafe, 123e4567-e89b-12d3-a456-426655440000) using ttl 60");
+        assertEquals(shape.cql, "insert into t (k, v, b, u) values (?, ?, ?, ?) using ttl ?");
+        assertEquals(shape.literals, Arrays.asList("1", "'a''b'", "0xcafe",
+                "123e4567-e89b-12d3-a456-426655440000", "60"));
+
+        shape = AutoParameterizer.Shape.of("UPDATE t SET c = c + 1 WHERE k IN (1, 2)");
+        assertEquals(shape.cql, "UPDATE t SET c = c + ? WHERE k IN (?, ?)");
+        assertEquals(shape.literals, Arrays.asList("1", "1", "2"));
+    }
+
+    @Test
+    public void testShapeNotParameterizable() throws Exception {
+        assertNull(AutoParameterizer.Shape.of("CREATE TABLE t (k int PRIMARY KEY)"));
+        assertNull(AutoParameterizer.Shape.of("BEGIN BATCH INSERT INTO t (k) VALUES (1); "
+                + "APPLY BATCH"));
+        assertNull(AutoParameterizer.Shape.of("SELECT * FROM t WHERE k = ?"));
+        assertNull(AutoParameterizer.Shape.of("SELECT * FROM t WHERE k = :k"));
+        assertNull(AutoParameterizer.Shape.of("UPDATE t SET l = l + [1] WHERE k = 1"));
+        assertNull(AutoParameterizer.Shape.of("UPDATE t SET c = c -1 WHERE k = 1"));
+        assertNull(AutoParameterizer.Shape.of("-- only a comment"));
+    }
+
+    @Test
+    public void testPromotion() throws Exception {
+        CodecRegistry codecRegistry = new CodecRegistry();
+        ProtocolOptions protocolOptions = mock(ProtocolOptions.class);
+        when(protocolOptions.getProtocolVersion()).thenReturn(ProtocolVersion.V4);
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getCodecRegistry()).thenReturn(codecRegistry);
+        when(configuration.getProtocolOptions()).thenReturn(protocolOptions);
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+
+        ColumnDefinitions variables = mock(ColumnDefinitions.class);
+        when(variables.size()).thenReturn(2);
+        when(variables.getType(0)).thenReturn(DataType.text());
+        when(variables.getType(1)).thenReturn(DataType.bigint());
+        BoundStatement bound = mock(BoundStatement.class);
+        PreparedStatement prepared = mock(PreparedStatement.class);
+        when(prepared.getVariables()).thenReturn(variables);
+        when(prepared.bind()).thenReturn(bound);
+
+        Session session = mock(Session.class);
+        when(session.getCluster()).thenReturn(cluster);
+        when(session.getLoggedKeyspace()).thenReturn("ks");
+        when(session.prepareAsync(anyString())).thenReturn(Futures.immediateFuture(prepared));
+
+        AutoParameterizer autoParameterizer = new AutoParameterizer(session, 2, 10);
+        assertNull(autoParameterizer.bind("SELECT * FROM t WHERE k = 'a' AND c = 1"));
+        // the shape is prepared the second time it is seen
+        assertNull(autoParameterizer.bind("SELECT * FROM t WHERE k = 'b' AND c = 2"));
+        verify(session).prepareAsync("SELECT * FROM t WHERE k = ? AND c = ?");
+
+        assertSame(autoParameterizer.bind("SELECT  *  FROM t WHERE k = 'c' AND c = 3"), bound);
+        verify(bound).setBytesUnsafe(0,
+                TypeCodec.varchar().serialize("c", ProtocolVersion.V4));
+        verify(bound).setBytesUnsafe(1, TypeCodec.bigint().serialize(3L, ProtocolVersion.V4));
+
+        // a literal that does not match the type of its variable falls back to a simple statement
+        assertNull(autoParameterizer.bind("SELECT * FROM t WHERE k = 'd' AND c = 'x'"));
+
+        verify(session, times(1)).prepareAsync(anyString());
+        assertEquals(autoParameterizer.stats().hitCount(), 2);
+        assertEquals(autoParameterizer.stats().missCount(), 2);
+    }
+}
@@ -14,6 +14,9 @@
 package com.github.adejanovski.cassandra.jdbc;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
 
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -215,6 +218,44 @@ public class BatchStatementsUnitTest {
 
     }
 
+    @Test
+    public void testSplitStatementMoreResults() throws Exception {
+
+        Statement stmt = con.createStatement();
+        stmt.execute("truncate testcollection");
+        Statement statement = con.createStatement();
+        int nbRows = 10;
+
+        StringBuilder queryBuilder = new StringBuilder();
+        for (int i = 0; i < nbRows; i++) {
+            queryBuilder
+                    .append("INSERT INTO testcollection (k,L) VALUES( " + i + ",[1, 3, 12345]);");
+        }
+        statement.execute(queryBuilder.toString());
+
+        StringBuilder queries = new StringBuilder();
+        for (int i = 0; i < nbRows; i++) {
+            queries.append("SELECT * FROM testcollection where k = " + i + ";");
+        }
+
+        // with execute(), each select gets its own result set, in statement order
+        assertTrue(statement.execute(queries.toString()));
+        int nbResults = 0;
+        do {
+            ResultSet result = statement.getResultSet();
+            assertTrue(result.next());
+            assertEquals(nbResults, result.getInt("k"));
+            assertFalse(result.next());
+            nbResults++;
+        } while (statement.getMoreResults());
+
+        assertEquals(nbRows, nbResults);
+        assertNull(statement.getResultSet());
+
+        statement.close();
+
+    }
+
     @Test
     public void testBatchPreparedStatement() throws Exception {
 
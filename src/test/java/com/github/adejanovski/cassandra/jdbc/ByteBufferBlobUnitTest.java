@@ -0,0 +1,97 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Row;
+
+public class ByteBufferBlobUnitTest {
+
+    /**
+     * @return the bytes 3 to 7 of a larger buffer, as the driver may return them
+     */
+    private static ByteBuffer slice() {
+        ByteBuffer bytes = ByteBuffer.wrap(new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+        bytes.position(3).limit(8);
+        return bytes.slice();
+    }
+
+    @Test
+    public void testBlob() throws Exception {
+        ByteBuffer value = slice();
+        Blob blob = new ByteBufferBlob(value);
+        assertEquals(blob.length(), 5);
+        assertEquals(blob.getBytes(1, 5), new byte[] { 3, 4, 5, 6, 7 });
+        assertEquals(blob.getBytes(2, 2), new byte[] { 4, 5 });
+        assertEquals(blob.getBytes(4, 10), new byte[] { 6, 7 });
+        assertEquals(blob.position(new byte[] { 5, 6 }, 1), 3);
+        assertEquals(blob.position(new byte[] { 5, 6 }, 4), -1);
+
+        InputStream stream = blob.getBinaryStream(2, 3);
+        assertEquals(stream.read(), 4);
+        byte[] read = new byte[4];
+        assertEquals(stream.read(read), 2);
+        assertEquals(read[1], 6);
+        assertEquals(stream.read(), -1);
+        // the value of the driver is left as is
+        assertEquals(value.position(), 0);
+
+        blob.free();
+        try {
+            blob.length();
+            throw new AssertionError();
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testResultSet() throws Exception {
+        ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(columns.size()).thenReturn(1);
+        when(columns.getType(0)).thenReturn(DataType.blob());
+        Row row = mock(Row.class);
+        when(row.getColumnDefinitions()).thenReturn(columns);
+        when(row.getBytes(0)).thenReturn(slice());
+        com.datastax.driver.core.ResultSet rows = mock(com.datastax.driver.core.ResultSet.class);
+        when(rows.iterator()).thenReturn(Collections.singletonList(row).iterator());
+        when(rows.isFullyFetched()).thenReturn(true);
+
+        CassandraResultSet resultSet = new CassandraResultSet(mock(CassandraStatement.class),
+                rows);
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getBytes(1), new byte[] { 3, 4, 5, 6, 7 });
+        assertEquals(resultSet.getBlob(1).getBytes(1, 5), new byte[] { 3, 4, 5, 6, 7 });
+        assertEquals(resultSet.getBinaryStream(1).read(), 3);
+        ByteBuffer bytes = resultSet.getByteBuffer(1);
+        assertTrue(bytes.isReadOnly());
+        assertEquals(bytes.remaining(), 5);
+        assertEquals(bytes.get(0), 3);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.EndPoint;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+
+public class ClusterHolderUnitTest {
+
+    @Test
+    public void testClustersAreToldApartByTheirSettings() throws Exception {
+        // keyspaces and options of the connections share a cluster
+        assertEquals(
+                ClusterHolder.key(Utils.parseURL("jdbc:cassandra://host1--host2:9042/keyspace1")),
+                ClusterHolder.key(Utils.parseURL(
+                        "jdbc:cassandra://host1--host2:9042/keyspace2?consistency=QUORUM&autoprepare=true")));
+
+        // but not other hosts, ports, credentials or pooling options
+        assertFalse(ClusterHolder.key(Utils.parseURL("jdbc:cassandra://host1:9042/keyspace1"))
+                .equals(ClusterHolder.key(Utils.parseURL("jdbc:cassandra://host1:9043/keyspace1"))));
+        Properties credentials = Utils.parseURL("jdbc:cassandra://host1:9042/keyspace1");
+        credentials.setProperty(Utils.TAG_USER, "jdoe");
+        assertFalse(ClusterHolder.key(Utils.parseURL("jdbc:cassandra://host1:9042/keyspace1"))
+                .equals(ClusterHolder.key(credentials)));
+        assertFalse(ClusterHolder.key(Utils.parseURL("jdbc:cassandra://host1:9042/keyspace1"))
+                .equals(ClusterHolder.key(Utils.parseURL(
+                        "jdbc:cassandra://host1:9042/keyspace1?maxconnectionsperhost=4"))));
+    }
+
+    @Test
+    public void testBadKeyspaceKeepsTheSharedCluster() throws Exception {
+        Properties properties = Utils.parseURL("jdbc:cassandra://localhost:9042/keyspace1");
+        ClusterHolder shared = ClusterHolder.acquire(properties);
+        ClusterHolder failing = ClusterHolder.acquire(properties);
+        assertSame(failing, shared);
+
+        // the session failed, not the cluster, which other sessions still use
+        failing.release(new InvalidQueryException("Keyspace 'keyspace2' does not exist"));
+        ClusterHolder next = ClusterHolder.acquire(properties);
+        assertSame(next, shared);
+        assertFalse(shared.cluster.isClosed());
+
+        // the cluster failed: new sessions get a new one
+        next.release(new NoHostAvailableException(Collections.<EndPoint, Throwable> emptyMap()));
+        ClusterHolder rebuilt = ClusterHolder.acquire(properties);
+        assertNotSame(rebuilt, shared);
+        assertFalse(shared.cluster.isClosed());
+
+        shared.release();
+        assertTrue(shared.cluster.isClosed());
+        rebuilt.release();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mockito.Matchers;
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TypeCodec;
+import com.github.adejanovski.cassandra.jdbc.ColumnAccessor.CollectionMode;
+
+public class ColumnAccessorUnitTest {
+
+    @Test
+    public void testScalars() throws Exception {
+        Row row = mock(Row.class);
+        when(row.getInt(0)).thenReturn(42);
+        when(row.getFloat(1)).thenReturn(1.5f);
+        when(row.getVarint(2)).thenReturn(BigInteger.TEN);
+        when(row.getTimestamp(3)).thenReturn(new Date(1000L));
+        when(row.isNull(4)).thenReturn(true);
+
+        ColumnAccessor accessor = ColumnAccessor.of(DataType.cint());
+        assertEquals(accessor.getObject(row, 0), 42);
+        assertEquals(accessor.getLong(row, 0), 42L);
+        assertEquals(accessor.getString(row, 0), "42");
+
+        assertEquals(ColumnAccessor.of(DataType.cfloat()).getDouble(row, 1), 1.5);
+        assertEquals(ColumnAccessor.of(DataType.varint()).getLong(row, 2), 10L);
+
+        accessor = ColumnAccessor.of(DataType.timestamp());
+        assertEquals(accessor.getObject(row, 3), new Timestamp(1000L));
+        assertNull(accessor.getObject(row, 4));
+        assertNull(accessor.getString(row, 4));
+    }
+
+    @Test
+    public void testCollections() throws Exception {
+        Row row = mock(Row.class);
+        when(row.getSet(0, String.class))
+                .thenReturn(new LinkedHashSet<String>(Arrays.asList("a", "b")));
+        when(row.getList(1, Long.class)).thenReturn(Arrays.asList(1L, 2L));
+
+        ColumnAccessor accessor = ColumnAccessor.of(DataType.set(DataType.text()));
+        assertEquals(accessor.getObject(row, 0),
+                new LinkedHashSet<String>(Arrays.asList("a", "b")));
+        assertEquals(accessor.getString(row, 0), "[a, b]");
+        assertEquals(ColumnAccessor.of(DataType.list(DataType.bigint())).getObject(row, 1),
+                Arrays.asList(1L, 2L));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testViewCollections() throws Exception {
+        Row row = mock(Row.class);
+        when(row.getList(0, Long.class)).thenReturn(Arrays.asList(1L, 2L));
+
+        @SuppressWarnings("unchecked")
+        List<Long> list = (List<Long>) ColumnAccessor
+                .of(DataType.list(DataType.bigint()), CollectionMode.VIEW, null).getObject(row, 0);
+        assertEquals(list, Arrays.asList(1L, 2L));
+        list.add(3L);
+    }
+
+    @Test
+    public void testLazyCollections() throws Exception {
+        ProtocolVersion version = ProtocolVersion.V4;
+        List<Long> values = Arrays.asList(1L, 2L, 3L);
+        Row row = mock(Row.class);
+        when(row.getBytesUnsafe(0))
+                .thenReturn(TypeCodec.list(TypeCodec.bigint()).serialize(values, version));
+        when(row.getList(0, Long.class)).thenReturn(values);
+        when(row.isNull(1)).thenReturn(true);
+
+        ColumnAccessor accessor = ColumnAccessor.of(DataType.list(DataType.bigint()),
+                CollectionMode.LAZY, version);
+        List<?> list = (List<?>) accessor.getObject(row, 0);
+        assertEquals(list.size(), 3);
+        verify(row, never()).getList(anyInt(), Matchers.<Class<Long>> any());
+        assertEquals(list.get(2), 3L);
+        assertEquals(list, values);
+        verify(row, times(1)).getList(0, Long.class);
+        assertTrue(((List<?>) accessor.getObject(row, 1)).isEmpty());
+
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        map.put("a", 1);
+        map.put("b", 2);
+        when(row.getBytesUnsafe(2)).thenReturn(
+                TypeCodec.map(TypeCodec.varchar(), TypeCodec.cint()).serialize(map, version));
+        when(row.getMap(2, String.class, Integer.class)).thenReturn(map);
+        Map<?, ?> lazyMap = (Map<?, ?>) ColumnAccessor
+                .of(DataType.map(DataType.text(), DataType.cint()), CollectionMode.LAZY, version)
+                .getObject(row, 2);
+        assertEquals(lazyMap.size(), 2);
+        assertEquals(lazyMap.get("b"), 2);
+
+        Set<?> set = (Set<?>) ColumnAccessor
+                .of(DataType.set(DataType.text()), CollectionMode.LAZY, version)
+                .getObject(row, 3);
+        assertEquals(set.size(), 0);
+    }
+
+    @Test
+    public void testAccessorsFollowColumns() throws Exception {
+        ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(columns.size()).thenReturn(2);
+        when(columns.getType(0)).thenReturn(DataType.text());
+        when(columns.getType(1)).thenReturn(DataType.bigint());
+
+        ColumnAccessor[] accessors = ColumnAccessor.of(columns);
+        assertEquals(accessors.length, 2);
+        assertEquals(accessors[0].type, DataType.text());
+        assertEquals(accessors[1].type, DataType.bigint());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.LocalDate;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TypeCodec;
+
+public class ColumnarBatchUnitTest {
+
+    private static final ProtocolVersion V4 = ProtocolVersion.V4;
+
+    @Test
+    public void testNextBatch() throws Exception {
+        ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(columns.size()).thenReturn(5);
+        when(columns.getType(0)).thenReturn(DataType.bigint());
+        when(columns.getType(1)).thenReturn(DataType.cint());
+        when(columns.getType(2)).thenReturn(DataType.cfloat());
+        when(columns.getType(3)).thenReturn(DataType.text());
+        when(columns.getType(4)).thenReturn(DataType.date());
+
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < 7; i++) {
+            Row row = mock(Row.class);
+            when(row.getColumnDefinitions()).thenReturn(columns);
+            when(row.getBytesUnsafe(0)).thenReturn(TypeCodec.bigint().serialize(i * 1000L, V4));
+            when(row.getBytesUnsafe(1)).thenReturn(TypeCodec.cint().serialize(-i, V4));
+            when(row.getBytesUnsafe(2)).thenReturn(TypeCodec.cfloat().serialize(i + 0.5f, V4));
+            // odd rows have no text
+            if (i % 2 == 0)
+                when(row.getBytesUnsafe(3)).thenReturn(TypeCodec.varchar().serialize("\u00e9" + i, V4));
+            when(row.getBytesUnsafe(4)).thenReturn(
+                    TypeCodec.date().serialize(LocalDate.fromDaysSinceEpoch(i - 3), V4));
+            rows.add(row);
+        }
+        Iterator<Row> iterator = rows.iterator();
+        com.datastax.driver.core.ResultSet driverRows = mock(
+                com.datastax.driver.core.ResultSet.class);
+        when(driverRows.iterator()).thenReturn(iterator);
+        when(driverRows.isFullyFetched()).thenReturn(true);
+
+        CassandraResultSet resultSet = new CassandraResultSet(mock(CassandraStatement.class),
+                driverRows);
+        ColumnarBatch batch = new ColumnarBatch(3);
+        assertEquals(resultSet.nextBatch(batch), 3);
+        assertEquals(batch.getColumnCount(), 5);
+        assertEquals(resultSet.getRow(), 3);
+        assertEquals(batch.getLongVector(0)[2], 2000L);
+        assertNull(batch.getIntVector(0));
+        assertEquals(batch.getIntVector(1)[1], -1);
+        assertEquals(batch.getDoubleVector(2)[0], 0.5);
+        assertEquals(batch.getString(3, 0), "\u00e90");
+        assertTrue(batch.isNull(3, 1));
+        assertNull(batch.getString(3, 1));
+        assertEquals(batch.getString(3, 2), "\u00e92");
+        assertEquals(batch.getIntVector(4)[0], -3);
+
+        assertEquals(resultSet.nextBatch(batch), 3);
+        assertEquals(batch.getLongVector(0)[0], 3000L);
+        assertTrue(batch.isNull(3, 0));
+        assertFalse(batch.isNull(3, 1));
+        assertEquals(batch.getString(3, 1), "\u00e94");
+        assertEquals(resultSet.nextBatch(batch), 1);
+        assertEquals(batch.getIntVector(4)[0], 3);
+        assertEquals(resultSet.nextBatch(batch), 0);
+        assertFalse(resultSet.next());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objenesis.ObjenesisStd;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.EndPoint;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.VersionNumber;
+
+/**
+ * Measures the latency of opening a connection on a session already open, the way a pool borrows
+ * them, against opening it while computing the settings of the session again as each connection
+ * used to.
+ * <p>
+ * Not a unit test: run its main method, with the count of connections as argument (1 million by
+ * default). The cluster is stubbed with the given count of hosts (second argument, 50 by default).
+ */
+public class ConnectBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int hostCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        // driver objects that are not mocks, so that the calls made to them are not recorded
+        ObjenesisStd objenesis = new ObjenesisStd();
+        Metadata metadata = (Metadata) objenesis.newInstance(Metadata.class);
+        set(Metadata.class, metadata, "clusterName", "benchmark");
+        ConcurrentMap<UUID, Host> hosts = new ConcurrentHashMap<UUID, Host>();
+        set(Metadata.class, metadata, "hosts", hosts);
+        for (int i = 0; i < hostCount; i++) {
+            Host host = (Host) objenesis.newInstance(Host.class);
+            set(Host.class, host, "endPoint",
+                    new BenchmarkEndPoint(new InetSocketAddress("10.0.0." + i, 9042)));
+            set(Host.class, host, "datacenter", "dc1");
+            set(Host.class, host, "rack", "rack" + (i % 3));
+            set(Host.class, host, "cassandraVersion", VersionNumber.parse("3.11.4"));
+            hosts.put(UUID.randomUUID(), host);
+        }
+        final Cluster cluster = new BenchmarkCluster(metadata);
+        Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                new Class<?>[] { Session.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getCluster"))
+                            return cluster;
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        Properties properties = Utils.parseURL(
+                "jdbc:cassandra://localhost:9042/bench?consistency=QUORUM&adaptiveFetchSize=true");
+        SessionHolder sessionHolder = mock(SessionHolder.class);
+        set(SessionHolder.class, sessionHolder, "session", session);
+        set(SessionHolder.class, sessionHolder, "properties", properties);
+        set(SessionHolder.class, sessionHolder, "settings",
+                new ConnectionSettings(properties, session));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+                new CassandraConnection(sessionHolder);
+            long warm = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                new ConnectionSettings(properties, session);
+                new CassandraConnection(sessionHolder);
+            }
+            long cold = System.nanoTime() - start;
+
+            System.out.printf("round %d: %.1f ns/connect, %.1f ns/connect computing the settings%n",
+                    round + 1, (double) warm / count, (double) cold / count);
+        }
+    }
+
+    private static void set(Class<?> type, Object object, String name, Object value)
+            throws Exception {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+
+    private static final class BenchmarkEndPoint implements EndPoint {
+
+        private final InetSocketAddress address;
+
+        BenchmarkEndPoint(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        public InetSocketAddress resolve() {
+            return address;
+        }
+    }
+
+    /**
+     * A cluster that is never initialized, with the given metadata.
+     */
+    private static final class BenchmarkCluster extends Cluster {
+
+        private final Metadata metadata;
+
+        BenchmarkCluster(Metadata metadata) {
+            super(new Initializer() {
+                private final Configuration configuration = Configuration.builder().build();
+
+                public String getClusterName() {
+                    return "benchmark";
+                }
+
+                public List<EndPoint> getContactPoints() {
+                    return Collections.<EndPoint> singletonList(
+                            new BenchmarkEndPoint(new InetSocketAddress("127.0.0.1", 9042)));
+                }
+
+                public Configuration getConfiguration() {
+                    return configuration;
+                }
+
+                public Collection<Host.StateListener> getInitialListeners() {
+                    return Collections.emptyList();
+                }
+            });
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Metadata getMetadata() {
+            return metadata;
+        }
+    }
+}
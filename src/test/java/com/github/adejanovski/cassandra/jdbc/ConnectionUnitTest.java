@@ -14,6 +14,12 @@
  */
 package com.github.adejanovski.cassandra.jdbc;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -27,6 +33,8 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.datastax.driver.core.Session;
+
 //import com.datastax.driver.core.CCMBridge;
 
 public class ConnectionUnitTest {
@@ -241,4 +249,61 @@ public class ConnectionUnitTest {
 
     }
 
+    @Test
+    public void preparedStatementCacheTest() throws SQLException {
+        String url = String.format("jdbc:cassandra://%s:%d/%s", HOST, PORT,
+                KEYSPACE + "?preparedCacheSize=1");
+        CassandraConnection con1 = (CassandraConnection) DriverManager.getConnection(url);
+        CassandraConnection con2 = (CassandraConnection) DriverManager.getConnection(url);
+
+        // connections sharing a session share their prepared statements
+        con1.prepareStatement("SELECT * FROM local WHERE key = ?").close();
+        con2.prepareStatement("SELECT * FROM local WHERE key = ?").close();
+        assertEquals(con1.getPreparedStatementCacheStats().missCount(), 1);
+        assertEquals(con1.getPreparedStatementCacheStats().hitCount(), 1);
+
+        con2.prepareStatement("SELECT * FROM peers WHERE peer = ?").close();
+        assertEquals(con2.getPreparedStatementCacheStats().evictionCount(), 1);
+
+        con2.close();
+        con1.close();
+    }
+
+    @Test
+    public void sharedClusterTest() throws Exception {
+        CassandraConnection con1 = (CassandraConnection) DriverManager
+                .getConnection(String.format("jdbc:cassandra://%s:%d/%s", HOST, PORT, "system"));
+        CassandraConnection con2 = (CassandraConnection) DriverManager.getConnection(
+                String.format("jdbc:cassandra://%s:%d/%s", HOST, PORT, "system_auth"));
+
+        // a session per keyspace, on the same cluster
+        assertNotSame(con1.getSession(), con2.getSession());
+        assertSame(con1.getSession().getCluster(), con2.getSession().getCluster());
+
+        con1.close();
+        assertFalse(con2.getSession().getCluster().isClosed());
+        con2.close();
+        assertTrue(con2.getSession().getCluster().isClosed());
+    }
+
+    @Test
+    public void idleSessionTest() throws Exception {
+        String url = String.format("jdbc:cassandra://%s:%d/%s", HOST, PORT,
+                KEYSPACE + "?sessionIdleTimeout=500");
+        CassandraConnection con1 = (CassandraConnection) DriverManager.getConnection(url);
+        Session session = con1.getSession();
+        con1.close();
+
+        // the session is still open, and reused
+        CassandraConnection con2 = (CassandraConnection) DriverManager.getConnection(url);
+        assertSame(con2.getSession(), session);
+        con2.close();
+
+        Thread.sleep(500 + 2 * SessionHolder.EVICTION_INTERVAL_MILLIS);
+        assertTrue(session.isClosed());
+        CassandraConnection con3 = (CassandraConnection) DriverManager.getConnection(url);
+        assertNotSame(con3.getSession(), session);
+        con3.close();
+    }
+
 }
@@ -0,0 +1,120 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class CqlLexerUnitTest {
+
+    @Test
+    public void testSplitSimpleStatements() throws Exception {
+        CqlLexer.Statements statements = CqlLexer
+                .split("select * from t1;  select * from t2 ;\nselect * from t3");
+        assertEquals(statements.size(), 3);
+        assertEquals(statements.get(0), "select * from t1");
+        assertEquals(statements.get(1), "select * from t2");
+        assertEquals(statements.get(2), "select * from t3");
+    }
+
+    @Test
+    public void testSplitIgnoresEmptyStatements() throws Exception {
+        CqlLexer.Statements statements = CqlLexer.split(";; select * from t1;; -- done\n;");
+        assertEquals(statements.size(), 1);
+        assertEquals(statements.get(0), "select * from t1");
+    }
+
+    @Test
+    public void testSplitKeepsSemicolonsInLiterals() throws Exception {
+        String cql = "insert into t1 (k, v) values (0, '0;; tptp ;0');"
+                + "insert into t1 (k, v) values (1, 'it''s; ok');"
+                + "insert into \"odd;name\" (k, v) values (2, $$a;'b$$);";
+        CqlLexer.Statements statements = CqlLexer.split(cql);
+        assertEquals(statements.size(), 3);
+        assertEquals(statements.get(0), "insert into t1 (k, v) values (0, '0;; tptp ;0')");
+        assertEquals(statements.get(1), "insert into t1 (k, v) values (1, 'it''s; ok')");
+        assertEquals(statements.get(2), "insert into \"odd;name\" (k, v) values (2, $$a;'b$$)");
+    }
+
+    @Test
+    public void testSplitSkipsComments() throws Exception {
+        String cql = "/* header; with a semicolon */ select * from t1; // it's; fine\n"
+                + "select * from t2 -- trailing; comment\n;";
+        CqlLexer.Statements statements = CqlLexer.split(cql);
+        assertEquals(statements.size(), 2);
+        assertEquals(statements.get(0), "select * from t1");
+        assertEquals(statements.get(1), "select * from t2");
+    }
+
+    @Test
+    public void testSplitKeepsBatchTogether() throws Exception {
+        String cql = "BEGIN UNLOGGED BATCH insert into t1 (k) values (1); "
+                + "insert into t1 (k) values (2); apply  batch; select * from t1;";
+        CqlLexer.Statements statements = CqlLexer.split(cql);
+        assertEquals(statements.size(), 2);
+        assertEquals(statements.get(0), "BEGIN UNLOGGED BATCH insert into t1 (k) values (1); "
+                + "insert into t1 (k) values (2); apply  batch");
+        assertEquals(statements.get(1), "select * from t1");
+    }
+
+    @Test
+    public void testSplitReturnsOffsets() throws Exception {
+        String cql = "  select 1 ;select 2";
+        CqlLexer.Statements statements = CqlLexer.split(cql);
+        assertEquals(statements.size(), 2);
+        assertEquals(statements.start(0), 2);
+        assertEquals(statements.end(0), 10);
+        assertEquals(statements.start(1), 12);
+        assertEquals(statements.end(1), cql.length());
+    }
+
+    @Test
+    public void testTokens() throws Exception {
+        CqlLexer lexer = new CqlLexer("SELECT x FROM t WHERE a = -1.5e3 AND b = 0xCAFE "
+                + "AND c = 123e4567-e89b-12d3-a456-426655440000 AND d = 1h30m AND e = ? AND f = :p");
+        int[] expected = { CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER,
+                CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.SYMBOL,
+                CqlLexer.NUMBER, CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.SYMBOL,
+                CqlLexer.BLOB, CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.SYMBOL,
+                CqlLexer.UUID, CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.SYMBOL,
+                CqlLexer.DURATION, CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.SYMBOL,
+                CqlLexer.BIND_MARKER, CqlLexer.IDENTIFIER, CqlLexer.IDENTIFIER, CqlLexer.SYMBOL,
+                CqlLexer.BIND_MARKER, CqlLexer.EOF };
+
+        int i = 0;
+        int type;
+        do {
+            type = lexer.next();
+            if (type == CqlLexer.WHITESPACE)
+                continue;
+            assertEquals(type, expected[i], "token " + i + " '" + lexer.tokenText() + "'");
+            i++;
+        } while (type != CqlLexer.EOF);
+        assertEquals(i, expected.length);
+    }
+
+    @Test
+    public void testKeyword() throws Exception {
+        CqlLexer lexer = new CqlLexer("begin \"BEGIN\"");
+        lexer.next();
+        assertTrue(lexer.isKeyword("BEGIN"));
+        lexer.next();
+        lexer.next();
+        assertEquals(lexer.tokenType(), CqlLexer.QUOTED_IDENTIFIER);
+        assertTrue(!lexer.isKeyword("BEGIN"));
+    }
+}
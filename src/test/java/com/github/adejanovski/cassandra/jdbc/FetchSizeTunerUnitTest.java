@@ -0,0 +1,59 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class FetchSizeTunerUnitTest {
+
+    @Test
+    public void testRowSize() throws Exception {
+        FetchSizeTuner tuner = new FetchSizeTuner(100 * 1000, 500, 10, 10000);
+        // nothing seen yet
+        assertEquals(tuner.nextFetchSize(100), 100);
+
+        // narrow rows: 10000 would fill a page, but it only doubles per page
+        tuner.sampleRowBytes(10);
+        assertEquals(tuner.nextFetchSize(100), 200);
+        assertEquals(tuner.nextFetchSize(8000), 10000);
+
+        // wide rows: 20 would fill a page, but it only halves per page
+        tuner = new FetchSizeTuner(100 * 1000, 500, 10, 10000);
+        tuner.sampleRowBytes(5000);
+        assertEquals(tuner.nextFetchSize(100), 50);
+        assertEquals(tuner.nextFetchSize(30), 20);
+        assertEquals(tuner.copy().nextFetchSize(30), 30);
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        FetchSizeTuner tuner = new FetchSizeTuner(100 * 1000, 500, 10, 10000);
+        tuner.sampleRowBytes(10);
+        // 100 rows took 400ms: no more than 125 rows fit in the latency budget
+        tuner.samplePage(TimeUnit.MILLISECONDS.toNanos(400), 100);
+        assertEquals(tuner.nextFetchSize(100), 125);
+        // unknown latencies are ignored
+        tuner.samplePage(0, 100);
+        assertEquals(tuner.nextFetchSize(100), 125);
+
+        // never below the minimum
+        tuner.samplePage(TimeUnit.SECONDS.toNanos(100), 100);
+        assertEquals(tuner.nextFetchSize(12), 10);
+    }
+}
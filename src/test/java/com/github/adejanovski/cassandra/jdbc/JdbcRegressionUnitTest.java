@@ -25,7 +25,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.SQLTransientException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
@@ -859,12 +860,14 @@ public class JdbcRegressionUnitTest {
 
     }
 
-    @Test(expectedExceptions = SQLTransientException.class)
-    public void testAsyncQuerySizeLimit() throws Exception {
+    @Test
+    public void testAsyncQueryPipelining() throws Exception {
         Statement stmt = con.createStatement();
         String createCF = "CREATE table test_async_query_size_limit(bigint_col bigint PRIMARY KEY, int_col int);";
         stmt.execute(createCF);
 
+        // more statements than the old MAX_ASYNC_QUERIES limit, they now go through a window of
+        // in flight requests instead of failing
         StringBuilder queries = new StringBuilder();
         for (int i = 0; i < CassandraStatement.MAX_ASYNC_QUERIES * 2; i++) {
             queries.append("INSERT INTO test_async_query_size_limit(bigint_col, int_col) values("
@@ -872,7 +875,10 @@ public class JdbcRegressionUnitTest {
         }
 
         stmt.execute(queries.toString());
-        Assert.assertTrue(false);
+        ResultSet result = stmt
+                .executeQuery("SELECT COUNT(*) FROM test_async_query_size_limit;");
+        Assert.assertTrue(result.next());
+        Assert.assertEquals(result.getLong(1), CassandraStatement.MAX_ASYNC_QUERIES * 2);
     }
 
     @Test
@@ -976,6 +982,134 @@ public class JdbcRegressionUnitTest {
 
     }
 
+    @Test
+    public void testIndependentPreparedStatements() throws Exception {
+        String insert = "INSERT INTO regressiontest (keyname, bValue, iValue) VALUES (?, ?, ?);";
+        PreparedStatement first = con.prepareStatement(insert);
+        PreparedStatement second = con.prepareStatement(insert);
+        Assert.assertNotSame(first, second);
+
+        // values bound on one statement do not leak into the other
+        first.setString(1, "independent1");
+        first.setBoolean(2, true);
+        second.setString(1, "independent2");
+        second.setBoolean(2, false);
+        first.setInt(3, 1);
+        second.setInt(3, 2);
+        first.execute();
+        second.execute();
+        first.close();
+        second.close();
+
+        Statement statement = con.createStatement();
+        ResultSet result = statement.executeQuery(
+                "SELECT bValue, iValue FROM regressiontest WHERE keyname = 'independent1';");
+        Assert.assertTrue(result.next());
+        Assert.assertTrue(result.getBoolean(1));
+        Assert.assertEquals(result.getInt(2), 1);
+        result = statement.executeQuery(
+                "SELECT bValue, iValue FROM regressiontest WHERE keyname = 'independent2';");
+        Assert.assertTrue(result.next());
+        Assert.assertFalse(result.getBoolean(1));
+        Assert.assertEquals(result.getInt(2), 2);
+        statement.close();
+    }
+
+    @Test
+    public void testUnsetUnboundParameters() throws Exception {
+        java.sql.Connection unsetCon = DriverManager.getConnection(
+                String.format("jdbc:cassandra://%s:%d/%s?unsetUnboundParameters=true", HOST, PORT,
+                        KEYSPACE));
+
+        PreparedStatement insert = unsetCon.prepareStatement(
+                "INSERT INTO regressiontest (keyname, bValue, iValue) VALUES (?, ?, ?);");
+        insert.setString(1, "unset");
+        insert.setBoolean(2, true);
+        insert.setInt(3, 1);
+        insert.execute();
+        AssertJUnit.assertEquals(0, statementExtras(insert).getUnsetParameterCount());
+
+        // bValue is left unset, so the value written before is kept
+        insert = unsetCon.prepareStatement(
+                "INSERT INTO regressiontest (keyname, bValue, iValue) VALUES (?, ?, ?);");
+        insert.setString(1, "unset");
+        insert.setInt(3, 2);
+        insert.execute();
+        AssertJUnit.assertEquals(1, statementExtras(insert).getUnsetParameterCount());
+
+        Statement statement = unsetCon.createStatement();
+        ResultSet result = statement.executeQuery(
+                "SELECT bValue, iValue FROM regressiontest WHERE keyname = 'unset';");
+        Assert.assertTrue(result.next());
+        Assert.assertTrue(result.getBoolean(1));
+        Assert.assertEquals(result.getInt(2), 2);
+
+        // an explicit null is still written
+        insert = unsetCon.prepareStatement(
+                "INSERT INTO regressiontest (keyname, bValue, iValue) VALUES (?, ?, ?);");
+        insert.setString(1, "unset");
+        insert.setNull(2, Types.BOOLEAN);
+        insert.execute();
+        AssertJUnit.assertEquals(1, statementExtras(insert).getUnsetParameterCount());
+        insert.close();
+
+        result = statement.executeQuery(
+                "SELECT bValue, iValue FROM regressiontest WHERE keyname = 'unset';");
+        Assert.assertTrue(result.next());
+        Assert.assertFalse(result.getBoolean(1));
+        Assert.assertEquals(result.getInt(2), 2);
+        statement.close();
+        unsetCon.close();
+    }
+
+    @Test
+    public void testPagingState() throws Exception {
+        Statement statement = con.createStatement();
+        statement.execute("CREATE TABLE IF NOT EXISTS paging (k int, c int, PRIMARY KEY (k, c));");
+        for (int i = 0; i < 10; i++)
+            statement.execute("INSERT INTO paging (k, c) VALUES (1, " + i + ");");
+
+        PreparedStatement select = con.prepareStatement("SELECT c FROM paging WHERE k = ?;");
+        select.setFetchSize(4);
+        select.setInt(1, 1);
+        CassandraResultSetExtras result = (CassandraResultSetExtras) select.executeQuery();
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(result.next());
+            Assert.assertEquals(result.getInt(1), i);
+        }
+        String pagingState = result.getPagingState();
+        Assert.assertNotNull(pagingState);
+
+        // resumes from the fifth row, on another statement
+        select = con.prepareStatement("SELECT c FROM paging WHERE k = ?;");
+        select.setFetchSize(4);
+        select.setInt(1, 1);
+        statementExtras(select).setPagingState(pagingState);
+        result = (CassandraResultSetExtras) select.executeQuery();
+        Assert.assertTrue(result.next());
+        Assert.assertEquals(result.getInt(1), 4);
+
+        // not a paging state of this query
+        statementExtras(statement).setPagingState(pagingState);
+        try {
+            statement.executeQuery("SELECT c FROM paging WHERE k = 2;");
+            Assert.fail();
+        } catch (SQLNonTransientException e) {
+            // expected
+        }
+
+        // only queries of a single statement can be resumed
+        statementExtras(statement).setPagingState(pagingState);
+        try {
+            statement.executeQuery("SELECT c FROM paging WHERE k = 1; SELECT c FROM paging WHERE k = 2;");
+            Assert.fail();
+        } catch (SQLFeatureNotSupportedException e) {
+            // expected
+        }
+        select.close();
+        statement.close();
+    }
+
     @Test
     public void testBlob() throws Exception {
         Statement stmt = con.createStatement();
@@ -0,0 +1,143 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TableMetadata;
+
+public class PartitionBatcherUnitTest {
+
+    // a cluster with a table ks.t whose clustering column is c
+    private static final Metadata METADATA = mock(Metadata.class);
+    static {
+        ColumnMetadata column = mock(ColumnMetadata.class);
+        when(column.getName()).thenReturn("c");
+        TableMetadata table = mock(TableMetadata.class);
+        when(table.getClusteringColumns()).thenReturn(Collections.singletonList(column));
+        KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        when(keyspace.getTable("\"t\"")).thenReturn(table);
+        when(METADATA.getKeyspace("\"ks\"")).thenReturn(keyspace);
+    }
+
+    private static int clustering;
+
+    /**
+     * @return a row of ks.t binding c, with a clustering key of its own
+     */
+    private static BoundStatement row(String partition, int size) {
+        return row("t", partition, clustering++, size);
+    }
+
+    private static BoundStatement row(String table, String partition, int clustering, int size) {
+        ColumnDefinitions variables = mock(ColumnDefinitions.class);
+        when(variables.size()).thenReturn(1);
+        when(variables.getKeyspace(0)).thenReturn("ks");
+        when(variables.getTable(0)).thenReturn(table);
+        when(variables.getIndexOf("\"c\"")).thenReturn(0);
+        PreparedStatement prepared = mock(PreparedStatement.class);
+        when(prepared.getVariables()).thenReturn(variables);
+
+        BoundStatement statement = mock(BoundStatement.class);
+        when(statement.preparedStatement()).thenReturn(prepared);
+        when(statement.getRoutingKey(any(ProtocolVersion.class), any(CodecRegistry.class)))
+                .thenReturn(partition == null ? null : ByteBuffer.wrap(partition.getBytes()));
+        when(statement.isSet(0)).thenReturn(true);
+        when(statement.getBytesUnsafe(0))
+                .thenReturn((ByteBuffer) ByteBuffer.allocate(size).putInt(0, clustering));
+        return statement;
+    }
+
+    @Test
+    public void testRowsAreGroupedByPartition() throws Exception {
+        PartitionBatcher batcher = new PartitionBatcher(ProtocolVersion.V4, new CodecRegistry(),
+                METADATA, 10, 1000);
+        BoundStatement alone = row(null, 10);
+        List<BoundStatement> rows = Arrays.asList(row("a", 10), row("b", 10), alone,
+                row("a", 10), row("c", 10), row("a", 10));
+
+        List<PartitionBatcher.Group> groups = batcher.group(rows);
+        assertEquals(groups.size(), 4);
+        // rows without a routing key are executed as they come
+        assertSame(groups.get(0).statement, alone);
+        assertEquals(groups.get(0).rows, new int[] { 2 });
+
+        assertTrue(groups.get(1).statement instanceof BatchStatement);
+        assertEquals(((BatchStatement) groups.get(1).statement).size(), 3);
+        assertEquals(groups.get(1).rows, new int[] { 0, 3, 5 });
+        // a partition with a single row is not wrapped in a batch
+        assertSame(groups.get(2).statement, rows.get(1));
+        assertSame(groups.get(3).statement, rows.get(4));
+    }
+
+    @Test
+    public void testBatchesAreCapped() throws Exception {
+        PartitionBatcher batcher = new PartitionBatcher(ProtocolVersion.V4, new CodecRegistry(),
+                METADATA, 2, 100);
+        List<BoundStatement> rows = Arrays.asList(row("a", 10), row("a", 10), row("a", 10),
+                row("b", 60), row("b", 60));
+
+        List<PartitionBatcher.Group> groups = batcher.group(rows);
+        assertEquals(groups.size(), 4);
+        // the third row of "a" does not fit in a batch of 2 statements
+        assertEquals(groups.get(0).rows, new int[] { 0, 1 });
+        // the second row of "b" would make the batch exceed 100 bytes
+        assertEquals(groups.get(1).rows, new int[] { 3 });
+        assertEquals(groups.get(2).rows, new int[] { 2 });
+        assertEquals(groups.get(3).rows, new int[] { 4 });
+    }
+
+    @Test
+    public void testRowsOfTheSameCqlRowKeepTheirOrder() throws Exception {
+        PartitionBatcher batcher = new PartitionBatcher(ProtocolVersion.V4, new CodecRegistry(),
+                METADATA, 10, 1000);
+        List<BoundStatement> rows = Arrays.asList(row("t", "a", 1, 10), row("t", "a", 2, 10),
+                row("t", "a", 1, 10), row("t", "a", 3, 10));
+
+        List<PartitionBatcher.Group> groups = batcher.group(rows);
+        assertEquals(groups.size(), 2);
+        // the second write of the row with c = 1 waits for the first batch to be executed
+        assertEquals(groups.get(0).rows, new int[] { 0, 1 });
+        assertEquals(groups.get(1).rows, new int[] { 2, 3 });
+
+        // the clustering columns of a table missing from the metadata are not known
+        rows = Arrays.asList(row("unknown", "a", 1, 10), row("unknown", "a", 2, 10));
+        groups = batcher.group(rows);
+        assertEquals(groups.size(), 2);
+        assertEquals(groups.get(0).rows, new int[] { 0 });
+        assertEquals(groups.get(1).rows, new int[] { 1 });
+    }
+}
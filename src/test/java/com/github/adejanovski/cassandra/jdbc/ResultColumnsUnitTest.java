@@ -0,0 +1,52 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+
+public class ResultColumnsUnitTest {
+
+    @Test
+    public void testLabels() throws Exception {
+        ColumnDefinitions definitions = mock(ColumnDefinitions.class);
+        when(definitions.size()).thenReturn(4);
+        String[] names = { "k", "Value", "value", "k" };
+        for (int i = 0; i < names.length; i++) {
+            when(definitions.getName(i)).thenReturn(names[i]);
+            when(definitions.getType(i)).thenReturn(DataType.text());
+        }
+
+        ResultColumns columns = new ResultColumns(definitions);
+        assertEquals(columns.accessors.length, 4);
+        // the first column with a label wins
+        assertEquals(columns.indexOf("k"), 1);
+        assertEquals(columns.indexOf("K"), 1);
+        // an exact match comes before a case insensitive one
+        assertEquals(columns.indexOf("Value"), 2);
+        assertEquals(columns.indexOf("value"), 3);
+        assertEquals(columns.indexOf("VALUE"), 2);
+        // quoted labels are case sensitive
+        assertEquals(columns.indexOf("\"value\""), 3);
+        assertEquals(columns.indexOf("\"VALUE\""), -1);
+        assertEquals(columns.indexOf("missing"), -1);
+    }
+}
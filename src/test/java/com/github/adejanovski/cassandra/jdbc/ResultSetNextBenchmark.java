@@ -0,0 +1,139 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Measures the cost of CassandraResultSet.next() per row over an in-memory result, without and
+ * with a monitor taken around each call as next() used to.
+ * <p>
+ * Not a unit test: run its main method, with the count of rows as argument (10 million by
+ * default).
+ */
+public class ResultSetNextBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        CassandraStatement statement = mock(CassandraStatement.class);
+        Row row = mock(Row.class);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            CassandraResultSet resultSet =
+                    new CassandraResultSet(statement, new InMemoryRows(row, count));
+            long start = System.nanoTime();
+            while (resultSet.next())
+                ;
+            long unlocked = System.nanoTime() - start;
+
+            resultSet = new CassandraResultSet(statement, new InMemoryRows(row, count));
+            start = System.nanoTime();
+            while (true) {
+                synchronized (resultSet) {
+                    if (!resultSet.next())
+                        break;
+                }
+            }
+            long locked = System.nanoTime() - start;
+
+            System.out.printf("round %d: %.2f ns/row, %.2f ns/row with a monitor%n", round + 1,
+                    (double) unlocked / count, (double) locked / count);
+        }
+    }
+
+    /**
+     * A fully fetched result of the same row repeated.
+     */
+    private static final class InMemoryRows implements ResultSet {
+
+        private final Row row;
+        private int left;
+
+        InMemoryRows(Row row, int count) {
+            this.row = row;
+            this.left = count;
+        }
+
+        public Iterator<Row> iterator() {
+            return new Iterator<Row>() {
+                public boolean hasNext() {
+                    return left > 0;
+                }
+
+                public Row next() {
+                    left--;
+                    return row;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        public boolean isExhausted() {
+            return left == 0;
+        }
+
+        public boolean isFullyFetched() {
+            return true;
+        }
+
+        public int getAvailableWithoutFetching() {
+            return left;
+        }
+
+        public ListenableFuture<ResultSet> fetchMoreResults() {
+            return Futures.<ResultSet> immediateFuture(this);
+        }
+
+        public Row one() {
+            return left-- > 0 ? row : null;
+        }
+
+        public List<Row> all() {
+            return Collections.nCopies(left, row);
+        }
+
+        public ExecutionInfo getExecutionInfo() {
+            return null;
+        }
+
+        public List<ExecutionInfo> getAllExecutionInfo() {
+            return Collections.emptyList();
+        }
+
+        public ColumnDefinitions getColumnDefinitions() {
+            return null;
+        }
+
+        public boolean wasApplied() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class ResultSetPrefetchUnitTest {
+
+    private static ResultSet rows(int count) {
+        ResultSet rows = mock(ResultSet.class);
+        when(rows.iterator())
+                .thenReturn(Collections.nCopies(count, mock(Row.class)).iterator());
+        return rows;
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        CassandraStatement statement = mock(CassandraStatement.class);
+        when(statement.prefetchThreshold()).thenReturn(2);
+        ResultSet rows = rows(7);
+        SettableFuture<ResultSet> fetch = SettableFuture.create();
+        when(rows.fetchMoreResults()).thenReturn(fetch);
+        // rows left in the pages fetched so far, before each row is read
+        when(rows.getAvailableWithoutFetching()).thenReturn(4, 3, 2, 1, 5, 1, 0);
+
+        CassandraResultSet resultSet = new CassandraResultSet(statement, rows);
+        for (int i = 0; i < 4; i++)
+            assertTrue(resultSet.next());
+        // asked for once, when 2 rows were left
+        verify(rows, times(1)).fetchMoreResults();
+        assertEquals(resultSet.getPrefetchHits(), 0);
+
+        fetch.set(rows);
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getPrefetchHits(), 1);
+        assertEquals(resultSet.getPrefetchStalls(), 0);
+
+        // the last page is not fetched ahead in time
+        when(rows.fetchMoreResults()).thenReturn(SettableFuture.<ResultSet> create());
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getPrefetchStalls(), 1);
+    }
+
+    @Test
+    public void testNoPrefetch() throws Exception {
+        CassandraStatement statement = mock(CassandraStatement.class);
+        ResultSet rows = rows(3);
+        when(rows.getAvailableWithoutFetching()).thenReturn(2, 1, 0);
+
+        CassandraResultSet resultSet = new CassandraResultSet(statement, rows);
+        while (resultSet.next())
+            ;
+        verify(rows, never()).fetchMoreResults();
+        assertEquals(resultSet.getPrefetchStalls(), 1);
+    }
+
+    @Test
+    public void testPagingStateOfPageRead() throws Exception {
+        CassandraStatement statement = mock(CassandraStatement.class);
+        when(statement.prefetchThreshold()).thenReturn(1);
+        PagedRows rows = new PagedRows(3, 3, new SimpleStatement("SELECT"));
+
+        CassandraResultSet resultSet = new CassandraResultSet(statement, rows);
+        for (int i = 0; i < 3; i++)
+            assertTrue(resultSet.next());
+        // the second page was fetched ahead while the first one is read
+        rows.completeFetch();
+        assertEquals(rows.getAllExecutionInfo().size(), 2);
+        assertEquals(resultSet.getPagingState(), rows.token(0));
+
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getPagingState(), rows.token(1));
+        while (resultSet.next())
+            ;
+        assertNull(resultSet.getPagingState());
+    }
+
+    @Test
+    public void testTunedFetchSizeRestored() throws Exception {
+        CassandraStatement statement = mock(CassandraStatement.class);
+        when(statement.prefetchThreshold()).thenReturn(1);
+        // rows of 10 bytes in pages of 100 bytes: the fetch size doubles from 3
+        when(statement.newFetchSizeTuner()).thenReturn(new FetchSizeTuner(100, 500, 1, 1000));
+        SimpleStatement driverStatement = new SimpleStatement("SELECT");
+        driverStatement.setFetchSize(3);
+        PagedRows rows = new PagedRows(3, 3, driverStatement);
+
+        CassandraResultSet resultSet = new CassandraResultSet(statement, rows);
+        for (int i = 0; i < 3; i++)
+            assertTrue(resultSet.next());
+        assertEquals(driverStatement.getFetchSize(), 6);
+        rows.completeFetch();
+        while (resultSet.next())
+            ;
+        assertEquals(driverStatement.getFetchSize(), 3);
+
+        // or when closed before all the rows are read
+        rows = new PagedRows(3, 3, driverStatement);
+        resultSet = new CassandraResultSet(statement, rows);
+        for (int i = 0; i < 3; i++)
+            assertTrue(resultSet.next());
+        assertEquals(driverStatement.getFetchSize(), 6);
+        resultSet.close();
+        assertEquals(driverStatement.getFetchSize(), 3);
+    }
+
+    /**
+     * The pages of a result, the next one fetched when the test completes the fetch asked for,
+     * or when the rows run out.
+     */
+    private static final class PagedRows implements ResultSet {
+
+        private final int pageSize;
+        private final int pageCount;
+        private final Statement statement;
+        private final Row row = mock(Row.class);
+        private final List<ExecutionInfo> pages = new ArrayList<ExecutionInfo>();
+        private SettableFuture<ResultSet> fetch;
+        private int read;
+
+        PagedRows(int pageSize, int pageCount, Statement statement) {
+            this.pageSize = pageSize;
+            this.pageCount = pageCount;
+            this.statement = statement;
+            ColumnDefinitions columns = mock(ColumnDefinitions.class);
+            when(columns.size()).thenReturn(1);
+            when(row.getColumnDefinitions()).thenReturn(columns);
+            when(row.getBytesUnsafe(0)).thenReturn(ByteBuffer.allocate(10));
+            fetchPage();
+        }
+
+        private void fetchPage() {
+            ExecutionInfo page = mock(ExecutionInfo.class);
+            when(page.getStatement()).thenReturn(statement);
+            if (pages.size() < pageCount - 1) {
+                PagingState pagingState = mock(PagingState.class);
+                when(pagingState.toBytes()).thenReturn(new byte[] { (byte) pages.size() });
+                when(page.getPagingState()).thenReturn(pagingState);
+            }
+            pages.add(page);
+        }
+
+        void completeFetch() {
+            fetchPage();
+            fetch.set(this);
+            fetch = null;
+        }
+
+        String token(int page) {
+            return Utils.formatPagingState(pages.get(page).getPagingState());
+        }
+
+        public Iterator<Row> iterator() {
+            return new Iterator<Row>() {
+                public boolean hasNext() {
+                    return read < pageSize * pageCount;
+                }
+
+                public Row next() {
+                    if (getAvailableWithoutFetching() == 0) {
+                        if (fetch != null)
+                            completeFetch();
+                        else
+                            fetchPage();
+                    }
+                    read++;
+                    return row;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        public boolean isExhausted() {
+            return read == pageSize * pageCount;
+        }
+
+        public boolean isFullyFetched() {
+            return pages.size() == pageCount;
+        }
+
+        public int getAvailableWithoutFetching() {
+            return pages.size() * pageSize - read;
+        }
+
+        public ListenableFuture<ResultSet> fetchMoreResults() {
+            if (isFullyFetched())
+                return Futures.<ResultSet> immediateFuture(this);
+            if (fetch == null)
+                fetch = SettableFuture.create();
+            return fetch;
+        }
+
+        public Row one() {
+            throw new UnsupportedOperationException();
+        }
+
+        public List<Row> all() {
+            throw new UnsupportedOperationException();
+        }
+
+        public ExecutionInfo getExecutionInfo() {
+            return pages.get(pages.size() - 1);
+        }
+
+        public List<ExecutionInfo> getAllExecutionInfo() {
+            return pages;
+        }
+
+        public ColumnDefinitions getColumnDefinitions() {
+            return null;
+        }
+
+        public boolean wasApplied() {
+            return true;
+        }
+    }
+}
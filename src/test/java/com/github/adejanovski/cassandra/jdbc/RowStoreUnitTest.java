@@ -0,0 +1,261 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+
+public class RowStoreUnitTest {
+
+    private static final ColumnDefinitions COLUMNS = mock(ColumnDefinitions.class);
+    static {
+        when(COLUMNS.size()).thenReturn(2);
+        when(COLUMNS.getType(0)).thenReturn(DataType.cint());
+        when(COLUMNS.getType(1)).thenReturn(DataType.text());
+        when(COLUMNS.getName(0)).thenReturn("k");
+        when(COLUMNS.getName(1)).thenReturn("v");
+    }
+
+    private static List<Row> rows(int count) {
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < count; i++) {
+            Row row = mock(Row.class);
+            when(row.getColumnDefinitions()).thenReturn(COLUMNS);
+            when(row.getInt(0)).thenReturn(i);
+            when(row.getBytesUnsafe(0)).thenReturn(TypeCodec.cint().serialize(i, ProtocolVersion.V4));
+            // every third value is null
+            if (i % 3 != 0) {
+                when(row.getString(1)).thenReturn("value " + i);
+                when(row.getBytesUnsafe(1))
+                        .thenReturn(TypeCodec.varchar().serialize("value " + i, ProtocolVersion.V4));
+            } else
+                when(row.isNull(1)).thenReturn(true);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static RowStore store(int memoryBytes) {
+        return new RowStore(ProtocolVersion.V4, CodecRegistry.DEFAULT_INSTANCE, null, memoryBytes);
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        RowStore store = store(1024);
+        for (Row row : rows(1000))
+            store.add(row);
+        assertTrue(store.spilled());
+        assertEquals(store.size(), 1000);
+
+        // in memory, spilled, then still in the write buffer, in any order
+        for (int i : new int[] { 999, 0, 500, 10, 998 }) {
+            Row row = store.get(i);
+            assertEquals(row.getInt(0), i);
+            if (i % 3 == 0)
+                assertTrue(row.isNull(1));
+            else
+                assertEquals(row.getString(1), "value " + i);
+            assertEquals(row.getColumnDefinitions(), COLUMNS);
+        }
+        store.close();
+
+        store = store(RowStore.DEFAULT_MEMORY_BYTES);
+        for (Row row : rows(10))
+            store.add(row);
+        assertFalse(store.spilled());
+        assertEquals(store.get(4).getString(1), "value 4");
+        store.close();
+    }
+
+    /**
+     * @return a connection over a mocked session of a protocol v4 cluster with no hosts
+     */
+    private static CassandraConnection connection(String url) throws Exception {
+        ProtocolOptions protocolOptions = mock(ProtocolOptions.class);
+        when(protocolOptions.getProtocolVersion()).thenReturn(ProtocolVersion.V4);
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProtocolOptions()).thenReturn(protocolOptions);
+        when(configuration.getCodecRegistry()).thenReturn(CodecRegistry.DEFAULT_INSTANCE);
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        when(cluster.getMetadata()).thenReturn(mock(Metadata.class));
+        Session session = mock(Session.class);
+        when(session.getCluster()).thenReturn(cluster);
+
+        Properties properties = Utils.parseURL(url);
+        SessionHolder sessionHolder = mock(SessionHolder.class);
+        set(sessionHolder, "session", session);
+        set(sessionHolder, "properties", properties);
+        set(sessionHolder, "settings", new ConnectionSettings(properties, session));
+        return new CassandraConnection(sessionHolder);
+    }
+
+    private static void set(SessionHolder sessionHolder, String name, Object value)
+            throws Exception {
+        Field field = SessionHolder.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(sessionHolder, value);
+    }
+
+    @Test
+    public void testScroll() throws Exception {
+        CassandraConnection connection =
+                connection("jdbc:cassandra://localhost:9042/test?spillthreshold=256");
+        CassandraStatement statement = (CassandraStatement) connection
+                .createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        assertEquals(statement.getResultSetType(), ResultSet.TYPE_SCROLL_INSENSITIVE);
+        Iterator<Row> iterator = rows(100).iterator();
+        com.datastax.driver.core.ResultSet rows = mock(com.datastax.driver.core.ResultSet.class);
+        when(rows.iterator()).thenReturn(iterator);
+        when(rows.isFullyFetched()).thenReturn(true);
+
+        CassandraResultSet resultSet = new CassandraResultSet(statement, rows);
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getInt(1), 1);
+        assertTrue(resultSet.previous());
+        assertEquals(resultSet.getInt(1), 0);
+        assertFalse(resultSet.previous());
+        assertTrue(resultSet.isBeforeFirst());
+
+        assertTrue(resultSet.absolute(50));
+        assertEquals(resultSet.getInt(1), 49);
+        assertEquals(resultSet.getString(2), "value 49");
+        assertTrue(resultSet.relative(-10));
+        assertEquals(resultSet.getInt(1), 39);
+        assertNull(resultSet.getString("v"));
+
+        assertTrue(resultSet.last());
+        assertEquals(resultSet.getRow(), 100);
+        assertTrue(resultSet.isLast());
+        assertTrue(resultSet.absolute(-2));
+        assertEquals(resultSet.getInt(1), 98);
+        assertTrue(resultSet.next());
+        assertFalse(resultSet.next());
+        assertTrue(resultSet.isAfterLast());
+        assertTrue(resultSet.previous());
+        assertEquals(resultSet.getInt(1), 99);
+        assertTrue(resultSet.first());
+        assertEquals(resultSet.getInt(1), 0);
+    }
+
+    private static CassandraResultSet scrollable(int count) throws Exception {
+        CassandraStatement statement = (CassandraStatement) connection(
+                "jdbc:cassandra://localhost:9042/test").createStatement(
+                        ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        Iterator<Row> iterator = rows(count).iterator();
+        com.datastax.driver.core.ResultSet rows = mock(com.datastax.driver.core.ResultSet.class);
+        when(rows.iterator()).thenReturn(iterator);
+        when(rows.getColumnDefinitions()).thenReturn(COLUMNS);
+        when(rows.isFullyFetched()).thenReturn(true);
+        return new CassandraResultSet(statement, rows);
+    }
+
+    @Test
+    public void testMetaDataWithoutCurrentRow() throws Exception {
+        CassandraResultSet resultSet = scrollable(0);
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        assertEquals(metaData.getColumnCount(), 2);
+        assertEquals(metaData.getColumnType(1), Types.INTEGER);
+        assertEquals(metaData.getColumnTypeName(2), "text");
+        assertFalse(resultSet.next());
+
+        resultSet = scrollable(3);
+        assertTrue(resultSet.last());
+        resultSet.beforeFirst();
+        assertEquals(resultSet.getMetaData().getColumnType(1), Types.INTEGER);
+        resultSet.afterLast();
+        assertEquals(resultSet.getMetaData().getColumnTypeName(1), "int");
+        try {
+            resultSet.getMetaData().getColumnType(3);
+            fail("only 2 columns");
+        } catch (SQLSyntaxErrorException e) {
+        }
+        try {
+            resultSet.getInt(1);
+            fail("no current row");
+        } catch (SQLNonTransientException e) {
+        }
+    }
+
+    @Test
+    public void testToken() throws Exception {
+        ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(columns.size()).thenReturn(2);
+        when(columns.getType(0)).thenReturn(DataType.bigint());
+        when(columns.getType(1)).thenReturn(DataType.cint());
+        when(columns.getName(0)).thenReturn("system.token(k)");
+        when(columns.getName(1)).thenReturn("k");
+        when(columns.getIndexOf("system.token(k)")).thenReturn(0);
+        when(columns.getIndexOf("k")).thenReturn(1);
+        Row row = mock(Row.class);
+        when(row.getColumnDefinitions()).thenReturn(columns);
+        when(row.getBytesUnsafe(0)).thenReturn(TypeCodec.bigint().serialize(42L, ProtocolVersion.V4));
+        when(row.getBytesUnsafe(1)).thenReturn(TypeCodec.cint().serialize(7, ProtocolVersion.V4));
+
+        Token token = mock(Token.class);
+        when(token.getType()).thenReturn(DataType.bigint());
+        Metadata metadata = mock(Metadata.class);
+        when(metadata.newToken("42")).thenReturn(token);
+        when(metadata.newToken("7")).thenReturn(token);
+
+        RowStore store = new RowStore(ProtocolVersion.V4, CodecRegistry.DEFAULT_INSTANCE, metadata,
+                RowStore.DEFAULT_MEMORY_BYTES);
+        store.add(row);
+        Row stored = store.get(0);
+        assertSame(stored.getToken(0), token);
+        assertSame(stored.getToken("system.token(k)"), token);
+        assertSame(stored.getPartitionKeyToken(), token);
+        try {
+            stored.getToken(1);
+            fail("not of the token type of the partitioner");
+        } catch (InvalidTypeException e) {
+        }
+        store.close();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class StatementPipelineUnitTest {
+
+    static class TestFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+        final Statement statement;
+
+        TestFuture(Statement statement) {
+            this.statement = statement;
+        }
+
+        void succeed(ResultSet rows) {
+            set(rows);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Session recordingSession(final List<TestFuture> submitted) {
+        Session session = mock(Session.class);
+        when(session.executeAsync(any(Statement.class))).thenAnswer(new Answer<ResultSetFuture>() {
+            @Override
+            public ResultSetFuture answer(InvocationOnMock invocation) {
+                TestFuture future = new TestFuture((Statement) invocation.getArguments()[0]);
+                submitted.add(future);
+                return future;
+            }
+        });
+        return session;
+    }
+
+    private static StatementPipeline.StatementSource statements(final int size) {
+        return new StatementPipeline.StatementSource() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Statement get(int index) {
+                return new SimpleStatement("INSERT " + index);
+            }
+        };
+    }
+
+    @Test
+    public void testWindowIsRespected() throws Exception {
+        List<TestFuture> submitted = Lists.newArrayList();
+        StatementPipeline pipeline = new StatementPipeline(recordingSession(submitted),
+                statements(10), 3).start();
+
+        assertEquals(submitted.size(), 3);
+
+        // completing out of order frees a slot for the next statement
+        submitted.get(1).succeed(mock(ResultSet.class));
+        assertEquals(submitted.size(), 4);
+        assertEquals(((SimpleStatement) submitted.get(3).statement).getQueryString(), "INSERT 3");
+
+        for (int i = 0; i < 10; i++) {
+            if (!submitted.get(i).isDone())
+                submitted.get(i).succeed(mock(ResultSet.class));
+        }
+        assertEquals(submitted.size(), 10);
+
+        List<ResultSet> results = pipeline.await();
+        assertEquals(results.size(), 10);
+        for (int i = 0; i < 10; i++)
+            assertSame(results.get(i), Uninterruptibles.getUninterruptibly(submitted.get(i)));
+    }
+
+    @Test
+    public void testSynchronousCompletionDoesNotRecurse() throws Exception {
+        Session session = mock(Session.class);
+        final ResultSet rows = mock(ResultSet.class);
+        when(session.executeAsync(any(Statement.class))).thenAnswer(new Answer<ResultSetFuture>() {
+            @Override
+            public ResultSetFuture answer(InvocationOnMock invocation) {
+                TestFuture future = new TestFuture((Statement) invocation.getArguments()[0]);
+                future.succeed(rows);
+                return future;
+            }
+        });
+
+        // enough statements to overflow the stack if each completion submitted the next one
+        // recursively
+        List<ResultSet> results = new StatementPipeline(session, statements(100000), 1).start()
+                .await();
+        assertEquals(results.size(), 100000);
+    }
+
+    @Test
+    public void testFailuresAreCollected() throws Exception {
+        List<TestFuture> submitted = Lists.newArrayList();
+        StatementPipeline pipeline = new StatementPipeline(recordingSession(submitted),
+                statements(5), 2).start();
+
+        for (int i = 0; i < 5; i++) {
+            if (i == 1 || i == 3)
+                submitted.get(i).fail(new RuntimeException("boom " + i));
+            else
+                submitted.get(i).succeed(mock(ResultSet.class));
+        }
+
+        try {
+            pipeline.await();
+            fail("expected a SQLTransientException");
+        } catch (SQLTransientException e) {
+            assertTrue(e.getMessage().startsWith("2 of 5 statements failed"), e.getMessage());
+            SQLException next = e.getNextException();
+            assertTrue(next.getMessage().startsWith("Statement 2 failed: boom 1"));
+            next = next.getNextException();
+            assertTrue(next.getMessage().startsWith("Statement 4 failed: boom 3"));
+            assertNull(next.getNextException());
+        }
+    }
+
+    @Test
+    public void testBatchUpdateCounts() throws Exception {
+        List<TestFuture> submitted = Lists.newArrayList();
+        StatementPipeline pipeline = new StatementPipeline(recordingSession(submitted),
+                statements(3), 2).start();
+
+        submitted.get(0).succeed(mock(ResultSet.class));
+        submitted.get(1).fail(new RuntimeException("boom"));
+        submitted.get(2).succeed(mock(ResultSet.class));
+
+        // statement 2 executed rows 1 and 3 of the batch
+        try {
+            pipeline.awaitUpdateCounts(4, new int[][] { { 0 }, { 1, 3 }, { 2 } });
+            fail("expected a BatchUpdateException");
+        } catch (BatchUpdateException e) {
+            assertEquals(e.getUpdateCounts(), new int[] { 1, java.sql.Statement.EXECUTE_FAILED,
+                    1, java.sql.Statement.EXECUTE_FAILED });
+            assertTrue(e.getMessage().startsWith("1 of 3 statements of the batch failed"),
+                    e.getMessage());
+            assertTrue(e.getNextException().getMessage().startsWith("Statement 2 failed: boom"));
+        }
+    }
+
+    private static Row row(int k) {
+        Row row = mock(Row.class);
+        when(row.getInt(0)).thenReturn(k);
+        return row;
+    }
+
+    private static ResultSet rows(Row... rows) {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.iterator()).thenReturn(Arrays.asList(rows).iterator());
+        return resultSet;
+    }
+
+    @Test
+    public void testMergedResultSetStreams() throws Exception {
+        List<TestFuture> submitted = Lists.newArrayList();
+        StatementPipeline pipeline = new StatementPipeline(recordingSession(submitted),
+                statements(4), 4).start();
+
+        submitted.get(0).succeed(rows(row(1)));
+        CassandraResultSet resultSet = new CassandraResultSet(mock(CassandraStatement.class),
+                pipeline);
+
+        // rows of the first statement are readable while the others are still running
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getInt(1), 1);
+
+        submitted.get(1).succeed(rows());
+        submitted.get(2).succeed(rows(row(2), row(3)));
+        submitted.get(3).fail(new RuntimeException("boom"));
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getInt(1), 2);
+        assertTrue(resultSet.next());
+        assertEquals(resultSet.getInt(1), 3);
+        try {
+            resultSet.next();
+            fail("expected a SQLTransientException");
+        } catch (SQLTransientException e) {
+            assertTrue(e.getMessage().startsWith("Statement 4 failed: boom"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCancelStopsSubmission() throws Exception {
+        List<TestFuture> submitted = Lists.newArrayList();
+        StatementPipeline pipeline = new StatementPipeline(recordingSession(submitted),
+                statements(10), 2).start();
+
+        pipeline.cancel();
+        assertTrue(submitted.get(0).isCancelled());
+        assertTrue(submitted.get(1).isCancelled());
+        assertEquals(submitted.size(), 2);
+        try {
+            pipeline.take(9);
+            fail("expected a CancellationException");
+        } catch (CancellationException e) {
+        }
+    }
+}
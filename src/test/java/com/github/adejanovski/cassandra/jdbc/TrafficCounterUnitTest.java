@@ -0,0 +1,92 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.ProtocolOptions.Compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class TrafficCounterUnitTest {
+
+    /**
+     * @return a protocol v4 frame with the given flags and body
+     */
+    private static ByteBuf frame(int flags, byte[] body) {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(0x84).writeByte(flags).writeShort(1).writeByte(0x08)
+                .writeInt(body.length).writeBytes(body);
+        return frame;
+    }
+
+    private static void countByteByByte(TrafficCounter.FrameStream stream, ByteBuf frames) {
+        while (frames.isReadable())
+            stream.count(frames.readSlice(1));
+    }
+
+    @Test
+    public void testUncompressedFrames() throws Exception {
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong uncompressed = new AtomicLong();
+        TrafficCounter.FrameStream stream =
+                new TrafficCounter.FrameStream(Compression.NONE, bytes, uncompressed);
+
+        ByteBuf frames = Unpooled.wrappedBuffer(frame(0, new byte[100]), frame(0, new byte[0]),
+                frame(0, new byte[7]));
+        stream.count(frames.readSlice(50));
+        stream.count(frames.readSlice(frames.readableBytes()));
+        assertEquals(bytes.get(), 9 + 100 + 9 + 9 + 7);
+        assertEquals(uncompressed.get(), bytes.get());
+    }
+
+    @Test
+    public void testLz4Frames() throws Exception {
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong uncompressed = new AtomicLong();
+        TrafficCounter.FrameStream stream =
+                new TrafficCounter.FrameStream(Compression.LZ4, bytes, uncompressed);
+
+        // the size before compression, then the compressed bytes
+        byte[] body = new byte[14];
+        body[2] = 0x01;
+        body[3] = 0x2c;
+        countByteByByte(stream, Unpooled.wrappedBuffer(frame(0x01, body),
+                frame(0, new byte[20])));
+        assertEquals(bytes.get(), 9 + 14 + 9 + 20);
+        assertEquals(uncompressed.get(), 9 + 300 + 9 + 20);
+    }
+
+    @Test
+    public void testSnappyFrames() throws Exception {
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong uncompressed = new AtomicLong();
+        TrafficCounter.FrameStream stream =
+                new TrafficCounter.FrameStream(Compression.SNAPPY, bytes, uncompressed);
+
+        // 300 as a varint, then the compressed bytes
+        byte[] body = new byte[12];
+        body[0] = (byte) 0xac;
+        body[1] = 0x02;
+        stream.count(Unpooled.wrappedBuffer(frame(0x01, body), frame(0x01, body)));
+        assertEquals(bytes.get(), 2 * (9 + 12));
+        assertEquals(uncompressed.get(), 2 * (9 + 300));
+    }
+}
@@ -15,14 +15,20 @@
 package com.github.adejanovski.cassandra.jdbc;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.fail;
 
+import java.nio.ByteBuffer;
 import java.sql.Date;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLNonTransientException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Locale;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -30,6 +36,10 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.SocketOptions;
 import com.datastax.driver.core.policies.ConstantReconnectionPolicy;
 import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
 import com.datastax.driver.core.policies.DefaultRetryPolicy;
@@ -157,6 +167,85 @@ public class UtilsUnitTest {
         assertTrue(Utils.parseReconnectionPolicy(retryPolicyStr) instanceof ExponentialReconnectionPolicy);
     }
 
+    @Test
+    public void testSessionOptionsParsing() throws Exception {
+        Properties props = Utils.parseURL("jdbc:cassandra://localhost:9042/Keyspace1"
+                + "?coreconnectionsperhost=2&maxconnectionsperhost=4"
+                + "&maxrequestsperconnection=2048&remotemaxconnectionsperhost=1"
+                + "&heartbeatinterval=10&readtimeout=20000&keepalive=false&tcpnodelay=true");
+        PoolingOptions pooling = Utils.parsePoolingOptions(props);
+        assertEquals(pooling.getCoreConnectionsPerHost(HostDistance.LOCAL), 2);
+        assertEquals(pooling.getMaxConnectionsPerHost(HostDistance.LOCAL), 4);
+        assertEquals(pooling.getMaxRequestsPerConnection(HostDistance.LOCAL), 2048);
+        assertEquals(pooling.getMaxConnectionsPerHost(HostDistance.REMOTE), 1);
+        assertEquals(pooling.getHeartbeatIntervalSeconds(), 10);
+
+        SocketOptions socket = Utils.parseSocketOptions(props);
+        assertEquals(socket.getReadTimeoutMillis(), 20000);
+        assertEquals(socket.getKeepAlive(), Boolean.FALSE);
+        assertEquals(socket.getTcpNoDelay(), Boolean.TRUE);
+        assertEquals(Utils.parseSocketOptions(new Properties()).getKeepAlive(), Boolean.TRUE);
+        // boolean options are all parsed alike
+        Properties flags = Utils.parseURL(
+                "jdbc:cassandra://localhost:9042/Keyspace1?keepalive=0&tcpnodelay=1&autoprepare=TRUE");
+        assertEquals(Utils.parseSocketOptions(flags).getKeepAlive(), Boolean.FALSE);
+        assertEquals(Utils.parseSocketOptions(flags).getTcpNoDelay(), Boolean.TRUE);
+        assertTrue(Utils.booleanOption(flags, Utils.TAG_AUTO_PREPARE, false));
+        assertFalse(Utils.booleanOption(flags, Utils.TAG_BATCH_BY_PARTITION, false));
+
+        props.setProperty(Utils.TAG_CORE_CONNECTIONS_PER_HOST, "8");
+        try {
+            Utils.parsePoolingOptions(props);
+            fail("core connections above max connections");
+        } catch (SQLException e) {
+            // expected
+        }
+        props.setProperty(Utils.TAG_CORE_CONNECTIONS_PER_HOST, "many");
+        try {
+            Utils.parsePoolingOptions(props);
+            fail("not a number");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSessionHolderOptions() throws Exception {
+        Properties props = Utils.parseURL(
+                "jdbc:cassandra://localhost:9042/Keyspace1?sessionIdleTimeout=60000&preparedCacheSize=abc");
+        assertEquals(Utils.longOption(props, Utils.TAG_SESSION_IDLE_TIMEOUT, 0), 60000);
+        assertEquals(Utils.intOption(props, Utils.TAG_MIN_IDLE_SESSIONS, 2), 2);
+        try {
+            Utils.intOption(props, Utils.TAG_PREPARED_CACHE_SIZE, 1000);
+            fail("not a number");
+        } catch (SQLNonTransientConnectionException e) {
+            assertTrue(e.getMessage().contains(Utils.TAG_PREPARED_CACHE_SIZE));
+        }
+    }
+
+    @Test
+    public void testEnumOption() throws Exception {
+        Properties props = Utils.parseURL(
+                "jdbc:cassandra://localhost:9042/Keyspace1?collections=lazy&consistency=QUORM");
+        Locale locale = Locale.getDefault();
+        // i is not uppercased to I in Turkish
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals(Utils.enumOption(props, Utils.TAG_COLLECTIONS,
+                    ColumnAccessor.CollectionMode.class, ColumnAccessor.CollectionMode.COPY),
+                    ColumnAccessor.CollectionMode.LAZY);
+        } finally {
+            Locale.setDefault(locale);
+        }
+        try {
+            Utils.enumOption(props, Utils.TAG_CONSISTENCY_LEVEL, ConsistencyLevel.class,
+                    ConsistencyLevel.ONE);
+            fail("not a consistency level");
+        } catch (SQLNonTransientConnectionException e) {
+            assertTrue(e.getMessage().contains(Utils.TAG_CONSISTENCY_LEVEL));
+        }
+    }
+
     @Test
     public void testCreateSubName() throws Exception {
         String happypath = "jdbc:cassandra://localhost:9042/Keyspace1?consistency=QUORUM&version=3.0.0";
@@ -273,4 +362,29 @@ public class UtilsUnitTest {
             }
         }
     }
+
+    @Test
+    public void testPagingState() throws Exception {
+        assertNull(Utils.parsePagingState(null));
+        assertNull(Utils.parsePagingState(""));
+        assertNull(Utils.formatPagingState(null));
+
+        // lengths of the driver paging state and of the hash of its statement, both, and the
+        // protocol version
+        ByteBuffer bytes = ByteBuffer.allocate(2 + 2 + 3 + 16 + 2);
+        bytes.putShort((short) 3).putShort((short) 16).put(new byte[] { 1, 2, 3 })
+                .put(new byte[16]).putShort((short) 4);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+        assertEquals(Utils.formatPagingState(Utils.parsePagingState(token)), token);
+
+        String input[] = { "not base64!", "AQID" };
+        for (int i = 0; i < input.length; ++i) {
+            try {
+                Utils.parsePagingState(input[i]);
+                fail();
+            } catch (SQLNonTransientException ex) {
+                assertEquals(ex.getMessage(), Utils.BAD_PAGING_STATE);
+            }
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.adejanovski.cassandra.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.TypeCodec;
+
+public class VariableBinderUnitTest {
+
+    private final CodecRegistry codecRegistry = new CodecRegistry();
+
+    @Test
+    public void testIntegers() throws Exception {
+        BoundStatement statement = mock(BoundStatement.class);
+
+        VariableBinder.of(DataType.cint(), codecRegistry).bindInt(statement, 0, 1);
+        verify(statement).setInt(0, 1);
+        VariableBinder.of(DataType.varint(), codecRegistry).bindInt(statement, 1, 2);
+        verify(statement).setVarint(1, BigInteger.valueOf(2));
+        VariableBinder.of(DataType.varint(), codecRegistry).bindLong(statement, 2, 3L);
+        verify(statement).setVarint(2, BigInteger.valueOf(3));
+        VariableBinder.of(DataType.bigint(), codecRegistry).bindInt(statement, 3, 4);
+        verify(statement).setLong(3, 4L);
+        VariableBinder.of(DataType.smallint(), codecRegistry).bindInt(statement, 4, 5);
+        verify(statement).setShort(4, (short) 5);
+        VariableBinder.of(DataType.tinyint(), codecRegistry).bindInt(statement, 5, 6);
+        verify(statement).setByte(5, (byte) 6);
+    }
+
+    @Test
+    public void testCollectionStrings() throws Exception {
+        BoundStatement statement = mock(BoundStatement.class);
+
+        VariableBinder.of(DataType.text(), codecRegistry).bindString(statement, 0, "[1, 2]");
+        verify(statement).setString(0, "[1, 2]");
+        VariableBinder.of(DataType.list(DataType.cint()), codecRegistry).bindString(statement, 1,
+                "[1, 2]");
+        verify(statement).setList(1, Arrays.asList(1, 2));
+        VariableBinder.of(DataType.set(DataType.text()), codecRegistry).bindString(statement, 2,
+                "[a, b]");
+        verify(statement).setSet(2, new LinkedHashSet<String>(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testObjects() throws Exception {
+        BoundStatement statement = mock(BoundStatement.class);
+        VariableBinder binder = VariableBinder.of(DataType.bigint(), codecRegistry);
+
+        assertTrue(binder.bindObject(statement, 0, 1L));
+        verify(statement).set(0, (Object) 1L,
+                (TypeCodec<Object>) (TypeCodec<?>) TypeCodec.bigint());
+        // an Integer has to be converted for a bigint variable
+        assertFalse(binder.bindObject(statement, 0, 1));
+    }
+
+    @Test
+    public void testBindersFollowVariables() throws Exception {
+        ColumnDefinitions variables = mock(ColumnDefinitions.class);
+        when(variables.size()).thenReturn(2);
+        when(variables.getType(0)).thenReturn(DataType.text());
+        when(variables.getType(1)).thenReturn(DataType.map(DataType.text(), DataType.cint()));
+
+        VariableBinder[] binders = VariableBinder.of(variables, codecRegistry);
+        assertEquals(binders.length, 2);
+        assertEquals(binders[0].type, DataType.text());
+        assertEquals(binders[1].type, DataType.map(DataType.text(), DataType.cint()));
+    }
+}